@@ -0,0 +1,120 @@
+package org.petri;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+
+/**
+ * Exact rank of an integer matrix by fraction-free Bareiss elimination, built up one row
+ * at a time. The rows added so far are kept in echelon form: the k-th basis row is the
+ * row after k-1 Bareiss steps, with its pivot in column pivotCol[k-1]. A new row runs
+ * through the same steps, i.e. row = (p_k * row - row[c_k] * b_k) / p_(k-1), where every
+ * division is exact. If anything is left, the row becomes the next basis row and the
+ * rank grows by one. Adding a row thus costs O(rank * cols) instead of a new elimination.
+ * Entries are kept in long and switch to BigInteger for good once a step overflows.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class BareissRank {
+
+	private final int colCount;
+	private final ArrayList<long[]> basis = new ArrayList<long[]>();
+	private ArrayList<BigInteger[]> bigBasis;	// Used instead of basis after an overflow
+	private final ArrayList<Integer> pivotCol = new ArrayList<Integer>();
+
+	/**
+	 * Constructor
+	 * @param colCount number of columns of the rows to be added
+	 */
+	public BareissRank(int colCount) {
+		this.colCount = colCount;
+	}
+
+	/**
+	 * Adds a row to the matrix
+	 * @param row entries of the row, not modified
+	 * @return true, if the row is linearly independent of the rows added before
+	 */
+	public boolean add(long[] row) {
+		if (bigBasis == null) {
+			try {
+				return addSmall(row.clone());
+			}
+			catch (ArithmeticException e) {
+				// Overflow, continue with BigInteger entries from now on
+				bigBasis = new ArrayList<BigInteger[]>();
+				for (long[] b : basis) {
+					bigBasis.add(toBig(b));
+				}
+				basis.clear();
+			}
+		}
+		return addBig(toBig(row));
+	}
+
+	private boolean addSmall(long[] row) {
+		long previous = 1;
+		for (int k=0; k<basis.size(); k++) {
+			long[] b = basis.get(k);
+			int c = pivotCol.get(k);
+			long pivot = b[c];
+			long factor = row[c];
+			for (int i=0; i<colCount; i++) {
+				row[i] = Math.subtractExact(Math.multiplyExact(pivot, row[i]), Math.multiplyExact(factor, b[i])) / previous;
+			}
+			previous = pivot;
+		}
+		int c = firstNonZero(row);
+		if (c < 0) {
+			return false;
+		}
+		basis.add(row);
+		pivotCol.add(c);
+		return true;
+	}
+
+	private boolean addBig(BigInteger[] row) {
+		BigInteger previous = BigInteger.ONE;
+		for (int k=0; k<bigBasis.size(); k++) {
+			BigInteger[] b = bigBasis.get(k);
+			int c = pivotCol.get(k);
+			BigInteger pivot = b[c];
+			BigInteger factor = row[c];
+			for (int i=0; i<colCount; i++) {
+				row[i] = pivot.multiply(row[i]).subtract(factor.multiply(b[i])).divide(previous);
+			}
+			previous = pivot;
+		}
+		for (int i=0; i<colCount; i++) {
+			if (row[i].signum() != 0) {
+				bigBasis.add(row);
+				pivotCol.add(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int firstNonZero(long[] row) {
+		for (int i=0; i<row.length; i++) {
+			if (row[i] != 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static BigInteger[] toBig(long[] row) {
+		BigInteger[] big = new BigInteger[row.length];
+		for (int i=0; i<row.length; i++) {
+			big[i] = BigInteger.valueOf(row[i]);
+		}
+		return big;
+	}
+
+	/**
+	 * @return rank of the rows added so far
+	 */
+	public int getRank() {
+		return pivotCol.size();
+	}
+}
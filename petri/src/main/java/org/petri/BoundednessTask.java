@@ -0,0 +1,95 @@
+package org.petri;
+
+import javax.swing.JFrame;
+import javax.swing.JOptionPane;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * Task building the Karp-Miller coverability tree from the current tokens in the background
+ * and reporting which places are unbounded and the bounds of the others, i.e. whether
+ * firing from the current marking may overflow the token counts
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class BoundednessTask extends AbstractTask {
+	static final int BATCH = 10000;	// Markings expanded between checks for cancellation
+	static final int MAX_SHOWN = 20;	// Places listed in the result dialog
+
+	private CyNetwork petriNet;
+	private PetriUtils petriUtils;
+	private int budget;
+
+	/**
+	 * Constructor
+	 * @param petriNet Petri net to be analysed
+	 * @param petriUtils Utilities for Petri Net
+	 * @param budget maximal number of markings of the coverability tree
+	 */
+	public BoundednessTask(CyNetwork petriNet, PetriUtils petriUtils, int budget) {
+		this.petriNet = petriNet;
+		this.petriUtils = petriUtils;
+		this.budget = budget;
+	}
+
+	public void run(TaskMonitor taskMonitor) throws Exception {
+		taskMonitor.setTitle("Checking boundedness");
+		CyNode[] cyPlaceArray = petriUtils.getPlaces();
+		CompiledNet net = new CompiledNet(petriNet, petriUtils.getTransitions(), cyPlaceArray);
+		long start = System.currentTimeMillis();
+		KarpMiller tree = new KarpMiller(net, net.marking, budget);
+		while (tree.expand(BATCH)) {
+			if (cancelled) {
+				return;
+			}
+			taskMonitor.setProgress((double) tree.getNodeCount() / budget);
+			taskMonitor.setStatusMessage(tree.getNodeCount() + " markings, " + tree.getUnboundedPlaces().length + " unbounded places");
+		}
+		if (cancelled) {
+			return;
+		}
+		taskMonitor.setProgress(1.0);
+		taskMonitor.setStatusMessage("Finished in " + (System.currentTimeMillis() - start) + " ms");
+		StringBuilder output = new StringBuilder();
+		if (tree.isTruncated()) {
+			output.append("Incomplete, stopped at the budget of " + budget + " markings\n");
+		}
+		output.append(tree.getNodeCount() + " markings in the coverability tree, " + tree.getPruned() + " covered successors pruned\n");
+		int[] unbounded = tree.getUnboundedPlaces();
+		int[] bounds = tree.getBounds();
+		if (unbounded.length > 0) {
+			output.append(unbounded.length + " unbounded places");
+			for (int i=0; i<unbounded.length && i<MAX_SHOWN; i++) {
+				output.append(i == 0 ? ": " : ", ").append(name(cyPlaceArray[unbounded[i]]));
+			}
+			output.append(unbounded.length > MAX_SHOWN ? ", ...\n" : "\n");
+		}
+		else if (tree.isComplete()) {
+			int max = 0;
+			for (int bound : bounds) {
+				max = Math.max(max, bound);
+			}
+			output.append("Bounded, at most " + max + " tokens on a place\n");
+		}
+		// Bounds of the bounded places, lower bounds if the tree is incomplete
+		int shown = 0;
+		for (int p=0; p<bounds.length && shown<MAX_SHOWN; p++) {
+			if (bounds[p] != KarpMiller.OMEGA) {
+				output.append(shown++ == 0 ? (tree.isComplete() ? "Bounds: " : "At least: ") : ", ");
+				output.append(name(cyPlaceArray[p])).append(": ").append(bounds[p]);
+			}
+		}
+		if (bounds.length - unbounded.length > MAX_SHOWN) {
+			output.append(", ...");
+		}
+		JFrame f = new JFrame("Boundedness");
+		JOptionPane.showMessageDialog(f, output.toString());
+	}
+
+	private String name(CyNode node) {
+		return petriNet.getDefaultNodeTable().getRow(node.getSUID()).get("name", String.class);
+	}
+}
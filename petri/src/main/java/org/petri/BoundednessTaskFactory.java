@@ -0,0 +1,32 @@
+package org.petri;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.AbstractTaskFactory;
+import org.cytoscape.work.TaskIterator;
+
+/**
+ * Factory for BoundednessTasks
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class BoundednessTaskFactory extends AbstractTaskFactory {
+	private final CyNetwork petriNet;
+	private final PetriUtils petriUtils;
+	private final int budget;
+
+	/**
+	 * Constructor
+	 * @param petriNet Petri net to be analysed
+	 * @param petriUtils Utilities for Petri Net
+	 * @param budget maximal number of markings of the coverability tree
+	 */
+	public BoundednessTaskFactory(final CyNetwork petriNet, final PetriUtils petriUtils, int budget) {
+		this.petriNet = petriNet;
+		this.petriUtils = petriUtils;
+		this.budget = budget;
+	}
+
+	public TaskIterator createTaskIterator(){
+		return new TaskIterator(new BoundednessTask(petriNet, petriUtils, budget));
+	}
+}
@@ -1,36 +1,49 @@
 package org.petri;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.swing.JComboBox;
-import org.cytoscape.model.CyEdge;
+import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
 import org.cytoscape.work.AbstractTask;
 import org.cytoscape.work.TaskMonitor;
 
 /**
- * Task to check whether one/all??? invariant(s) is/are realizable
+ * Task to check whether the selected invariant is realizable, i.e. whether its transitions
+ * can fire in some order from the current marking. Either stops at the first firing order
+ * or enumerates one order per class of orders differing only in the order of independent
+ * transitions, in parallel, reporting them while the search runs. The classes can be
+ * expanded into all their firing orders afterwards.
  * @author M. Gehrmann
  *
  */
 public class CheckRealizeTask extends AbstractTask {
+	static final int MAX_SHOWN = 1000;	// Firing orders listed in the result dialog
+	static final long REFRESH_MILLIS = 500;
 	private CyNetwork petriNet;
 	private JComboBox<String> invarHolder;
 	private PetriUtils petriUtils;
 	private boolean all;
+	private int parallelism;
+	private RealizabilitySearch search;
+	private long lastStatus;	// Time of the last status message about a found order
 
 	/**
 	 * Constructor
 	 * @param petriNet Petri net currently being worked on
 	 * @param invarHolder Container for invariants
-	 * @param all 
+	 * @param petriUtils Utilities for Petri Net
+	 * @param all enumerate all firing orders (true) or stop at the first one (false)
+	 * @param parallelism number of threads enumerating firing orders
 	 */
-	public CheckRealizeTask(CyNetwork petriNet, JComboBox<String> invarHolder, PetriUtils petriUtils, boolean all) {
+	public CheckRealizeTask(CyNetwork petriNet, JComboBox<String> invarHolder, PetriUtils petriUtils, boolean all, int parallelism) {
 		this.petriNet = petriNet;
 		this.invarHolder = invarHolder;
 		this.petriUtils = petriUtils;
 		this.all = all;
+		this.parallelism = parallelism;
 	}
 	
 	public void run(TaskMonitor taskMonitor) throws Exception {
@@ -52,41 +65,127 @@ public class CheckRealizeTask extends AbstractTask {
 		 * As such, we will start with implementing this for ONE invariant. Should build a switch tunable
 		 * so user can decide whether he wants one or all invariants checked.
 		 */
-		// First, we have to gather the invariant from the container. Do this in for loop to get all invariants
+		// First, we have to gather the invariant from the container
 		String invar = (String) invarHolder.getSelectedItem();
-		// Extract transitions from string by name
+		if (invar == null) {
+			throw new Exception("No invariant selected");
+		}
+		taskMonitor.setTitle("Checking realizability of " + invar);
+		CyNode[] cyTransitionArray = petriUtils.getTransitions();
+		CompiledNet net = new CompiledNet(petriNet, cyTransitionArray, petriUtils.getPlaces());
+		// Extract transitions from string by name, e.g. "2 T1, T3"
 		String[] transitionArray = invar.split(", ");
-		ArrayList<CyNode> transitions = new ArrayList<CyNode>();
-		HashMap<String, Integer> times = new HashMap<String, Integer>(); // Use this to store how often transitions are fired
-		String amt;
-		HashMap<String, Integer> tokens = new HashMap<String, Integer>();
-		for (String trans : transitionArray) {
-			amt = "1"; // Default
+		int[] transitions = new int[transitionArray.length];
+		int[] times = new int[transitionArray.length];	// How often each transition has to fire
+		String[] names = new String[transitionArray.length];
+		for (int i=0; i<transitionArray.length; i++) {
+			String trans = transitionArray[i];
+			String amt = "1"; // Default
 			if (trans.contains(" ")) {
 				amt = trans.split(" ")[0];
 				trans = trans.split(" ")[1];
 			}
-			times.put(trans, Integer.parseInt(amt));
-			for (CyNode n : petriNet.getNodeList()) {
-				if (petriNet.getDefaultNodeTable().getRow(n.getSUID()).get("name", String.class).equals(trans)) {
-					transitions.add(n);
-					// Gather all places influenced by the invariant
-					// Need to get the marking and map it
-					for (CyEdge e : petriNet.getAdjacentEdgeIterable(n, CyEdge.Type.INCOMING)) {
-						tokens.put(petriNet.getDefaultNodeTable().getRow(e.getSource().getSUID()).get("name", String.class),
-								petriNet.getDefaultNodeTable().getRow(e.getSource().getSUID()).get("tokens",Integer.class));
-					}
-					for (CyEdge e : petriNet.getAdjacentEdgeIterable(n, CyEdge.Type.OUTGOING)) {
-						tokens.put(petriNet.getDefaultNodeTable().getRow(e.getTarget().getSUID()).get("name", String.class),
-								petriNet.getDefaultNodeTable().getRow(e.getTarget().getSUID()).get("tokens",Integer.class));
-					}
+			times[i] = Integer.parseInt(amt);
+			names[i] = trans;
+			transitions[i] = -1;
+			for (int t=0; t<cyTransitionArray.length; t++) {
+				if (trans.equals(petriNet.getDefaultNodeTable().getRow(cyTransitionArray[t].getSUID()).get("name", String.class))) {
+					transitions[i] = t;
 					break;
 				}
 			}
+			if (transitions[i] < 0) {
+				throw new Exception("Transition " + trans + " not found");
+			}
 		}
+		search = new RealizabilitySearch(net, transitions, times, names);
+		ArrayList<int[]> classes = new ArrayList<int[]>();
 		ArrayList<String> realize = new ArrayList<String>();
-		petriUtils.namingsense(transitions, new ArrayList<String>(), times, tokens, realize, all);
-		// Display realizable permutations ... kind of want to get this into petriPanel to get rid of TaskMonitor
+		if (all) {
+			final TaskMonitor monitor = taskMonitor;
+			final AtomicLong found = new AtomicLong();
+			classes = search.enumerateClasses(parallelism, new RealizabilitySearch.Listener() {
+				public void found(String order) {
+					report(monitor, found.incrementAndGet(), order);
+				}
+			});
+			for (int[] order : classes) {
+				realize.add(search.describe(order));
+			}
+		}
+		else {
+			taskMonitor.setStatusMessage("Searching for a firing order");
+			String order = search.findOne();
+			if (order != null) {
+				realize.add(order);
+			}
+		}
 		petriUtils.realize = realize;
+		if (cancelled) {
+			return;
+		}
+		taskMonitor.setStatusMessage(realize.size() + (all ? " classes of realizable firing orders, " : " realizable firing orders, ")
+				+ search.getExpanded() + " states expanded, " + search.getDeadStates() + " dead ends");
+		// Display realizable permutations, without the brackets
+		JFrame f = new JFrame("Checking Realizability");
+		if (realize.isEmpty()) {
+			JOptionPane.showMessageDialog(f, "Invariant is not realizable");
+			return;
+		}
+		if (!all) {
+			JOptionPane.showMessageDialog(f, "Realizable, e.g.:\n" + list(realize));
+			return;
+		}
+		String[] options = {"Expand", "Close"};
+		int expand = JOptionPane.showOptionDialog(f, realize.size() + " classes of realizable firing orders, equal up to the order of independent transitions:\n"
+				+ list(realize), "Checking Realizability", JOptionPane.YES_NO_OPTION, JOptionPane.INFORMATION_MESSAGE, null, options, options[1]);
+		if (expand != 0) {
+			return;
+		}
+		// Expand the classes into their firing orders, one more than shown to tell whether there are more
+		taskMonitor.setStatusMessage("Expanding classes of firing orders");
+		ArrayList<String> orders = new ArrayList<String>();
+		for (int i=0; i<classes.size() && orders.size()<=MAX_SHOWN && !cancelled; i++) {
+			orders.addAll(search.expand(classes.get(i), MAX_SHOWN + 1 - orders.size()));
+		}
+		if (cancelled) {
+			return;
+		}
+		JOptionPane.showMessageDialog(f, (orders.size() > MAX_SHOWN ? "More than " + MAX_SHOWN : "" + orders.size())
+				+ " realizable firing orders:\n" + list(orders));
+	}
+
+	/**
+	 * Lists firing orders one per line, without the brackets
+	 * @param orders firing orders, e.g. "[T1, T2, T1]", at most MAX_SHOWN are listed
+	 */
+	private static String list(ArrayList<String> orders) {
+		StringBuilder output = new StringBuilder();
+		for (int i=0; i<orders.size() && i<MAX_SHOWN; i++) {
+			output.append(orders.get(i).replace("[", "").replace("]", "")).append("\n");
+		}
+		if (orders.size() > MAX_SHOWN) {
+			output.append("...");
+		}
+		return output.toString();
+	}
+
+	/**
+	 * Shows how many orders were found so far, at most every REFRESH_MILLIS milliseconds
+	 */
+	private synchronized void report(TaskMonitor taskMonitor, long count, String order) {
+		long now = System.currentTimeMillis();
+		if (now - lastStatus >= REFRESH_MILLIS) {
+			lastStatus = now;
+			taskMonitor.setStatusMessage(count + " classes of firing orders found, e.g. " + order);
+		}
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+		if (search != null) {
+			search.cancel();
+		}
 	}
 }
\ No newline at end of file
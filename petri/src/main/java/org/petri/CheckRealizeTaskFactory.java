@@ -16,21 +16,26 @@ public class CheckRealizeTaskFactory extends AbstractTaskFactory{
 	private final JComboBox<String> invarHolder;
 	private final PetriUtils petriUtils;
 	private final boolean all;
+	private final int parallelism;
 	
 	/**
 	 * Constructor
 	 * @param petriNet Petri net currently being worked on
 	 * @param invarHolder Container for invariants
-	 * @param all 
+	 * @param petriUtils Utilities for Petri Net
+	 * @param all enumerate all firing orders (true) or stop at the first one (false)
+	 * @param parallelism number of threads enumerating firing orders
 	 */
-	public CheckRealizeTaskFactory(final CyNetwork petriNet, JComboBox<String> invarHolder, PetriUtils petriUtils, boolean all) {
+	public CheckRealizeTaskFactory(final CyNetwork petriNet, JComboBox<String> invarHolder, PetriUtils petriUtils, boolean all,
+			int parallelism) {
 		this.petriNet = petriNet;
 		this.invarHolder = invarHolder;
 		this.petriUtils = petriUtils;
 		this.all = all;
+		this.parallelism = parallelism;
 	}
 	
 	public TaskIterator createTaskIterator(){
-		return new TaskIterator(new CheckRealizeTask(petriNet, invarHolder, petriUtils, all));
+		return new TaskIterator(new CheckRealizeTask(petriNet, invarHolder, petriUtils, all, parallelism));
 	}	
 }
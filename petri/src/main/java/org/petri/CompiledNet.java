@@ -0,0 +1,269 @@
+package org.petri;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+
+/**
+ * Primitive array representation of a Petri net, built once from the CyNetwork.
+ * Places and transitions are addressed by their index within the arrays returned
+ * by PetriUtils.getPlaces() and PetriUtils.getTransitions(). Arcs are stored in
+ * compressed sparse row form per transition, i.e. the input arcs of transition t
+ * are found at indices preStart[t] to preStart[t+1]-1 of prePlace and preWeight.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class CompiledNet {
+
+	protected final CyNode[] places;
+	protected final CyNode[] transitions;
+	protected final int placeCount;
+	protected final int transitionCount;
+	protected final int[] marking;	// Marking read from the tokens column
+	protected final int[] preStart;
+	protected final int[] prePlace;
+	protected final int[] preWeight;
+	protected final int[] postStart;
+	protected final int[] postPlace;
+	protected final int[] postWeight;
+	protected final double[] rates;		// Stochastic rate constants of transitions
+	protected int[] consumerStart;		// Input arcs per place, i.e. the transitions depending on it
+	protected int[] consumerTransition;
+	protected int[] consumerWeight;
+
+	/**
+	 * Constructor, compiles the given Petri net in one pass over its edges
+	 * @param petriNet Petri net to compile
+	 * @param cyTransitionArray CyNode[] containing all transitions
+	 * @param cyPlaceArray CyNode[] containing all places
+	 */
+	public CompiledNet(CyNetwork petriNet, CyNode[] cyTransitionArray, CyNode[] cyPlaceArray) {
+		this.places = cyPlaceArray;
+		this.transitions = cyTransitionArray;
+		this.placeCount = cyPlaceArray.length;
+		this.transitionCount = cyTransitionArray.length;
+		HashMap<CyNode, Integer> placeIndex = new HashMap<CyNode, Integer>();
+		HashMap<CyNode, Integer> transitionIndex = new HashMap<CyNode, Integer>();
+		marking = new int[placeCount];
+		for (int p=0; p<placeCount; p++) {
+			placeIndex.put(cyPlaceArray[p], p);
+			Integer tokens = petriNet.getDefaultNodeTable().getRow(cyPlaceArray[p].getSUID()).get("tokens", Integer.class);
+			marking[p] = tokens == null ? 0 : tokens;
+		}
+		rates = new double[transitionCount];
+		boolean hasRates = petriNet.getDefaultNodeTable().getColumn("rate") != null;
+		for (int t=0; t<transitionCount; t++) {
+			transitionIndex.put(cyTransitionArray[t], t);
+			Double rate = hasRates ? petriNet.getDefaultNodeTable().getRow(cyTransitionArray[t].getSUID()).get("rate", Double.class) : null;
+			rates[t] = rate == null ? 1.0 : rate;	// Default rate for nets without rates
+		}
+		// Collect all arcs first, then sort them into rows per transition
+		int edgeCount = petriNet.getEdgeCount();
+		int[] arcTransition = new int[edgeCount];
+		int[] arcPlace = new int[edgeCount];
+		int[] arcWeight = new int[edgeCount];
+		boolean[] arcIsPre = new boolean[edgeCount];
+		int arcs = 0;
+		int preCount = 0;
+		for (CyEdge e : petriNet.getEdgeList()) {
+			Integer source = placeIndex.get(e.getSource());
+			Integer target = transitionIndex.get(e.getTarget());
+			boolean pre = true;
+			if (source == null || target == null) { // Not a place->transition arc, try transition->place
+				target = transitionIndex.get(e.getSource());
+				source = placeIndex.get(e.getTarget());
+				pre = false;
+			}
+			if (source == null || target == null) { // Arc between nodes of the same type, ignored as by verifyNet()
+				continue;
+			}
+			Integer weight = petriNet.getDefaultEdgeTable().getRow(e.getSUID()).get("weight", Integer.class);
+			arcTransition[arcs] = target;
+			arcPlace[arcs] = source;
+			arcWeight[arcs] = weight == null ? 0 : weight;
+			arcIsPre[arcs] = pre;
+			if (pre) {
+				preCount++;
+			}
+			arcs++;
+		}
+		preStart = new int[transitionCount + 1];
+		postStart = new int[transitionCount + 1];
+		prePlace = new int[preCount];
+		preWeight = new int[preCount];
+		postPlace = new int[arcs - preCount];
+		postWeight = new int[arcs - preCount];
+		for (int a=0; a<arcs; a++) {
+			if (arcIsPre[a]) {
+				preStart[arcTransition[a] + 1]++;
+			}
+			else {
+				postStart[arcTransition[a] + 1]++;
+			}
+		}
+		for (int t=0; t<transitionCount; t++) {
+			preStart[t + 1] += preStart[t];
+			postStart[t + 1] += postStart[t];
+		}
+		int[] preFill = preStart.clone();
+		int[] postFill = postStart.clone();
+		for (int a=0; a<arcs; a++) {
+			if (arcIsPre[a]) {
+				prePlace[preFill[arcTransition[a]]] = arcPlace[a];
+				preWeight[preFill[arcTransition[a]]++] = arcWeight[a];
+			}
+			else {
+				postPlace[postFill[arcTransition[a]]] = arcPlace[a];
+				postWeight[postFill[arcTransition[a]]++] = arcWeight[a];
+			}
+		}
+		indexConsumers();
+	}
+
+	/**
+	 * Constructor for nets that do not originate from a CyNetwork
+	 * @param marking initial marking
+	 * @param preStart row offsets of the input arcs per transition
+	 * @param prePlace input places
+	 * @param preWeight weights of the input arcs
+	 * @param postStart row offsets of the output arcs per transition
+	 * @param postPlace output places
+	 * @param postWeight weights of the output arcs
+	 */
+	CompiledNet(int[] marking, int[] preStart, int[] prePlace, int[] preWeight,
+			int[] postStart, int[] postPlace, int[] postWeight) {
+		this.places = null;
+		this.transitions = null;
+		this.placeCount = marking.length;
+		this.transitionCount = preStart.length - 1;
+		this.marking = marking;
+		this.preStart = preStart;
+		this.prePlace = prePlace;
+		this.preWeight = preWeight;
+		this.postStart = postStart;
+		this.postPlace = postPlace;
+		this.postWeight = postWeight;
+		this.rates = new double[transitionCount];
+		Arrays.fill(rates, 1.0);
+		indexConsumers();
+	}
+
+	/**
+	 * Extracts the subnet of some transitions and places, e.g. one of its Components
+	 * @param transitionIndices transitions of the subnet, in ascending order
+	 * @param placeIndices places of the subnet, in ascending order, must contain all places connected to the transitions
+	 * @return subnet with its own marking, transitions and places renumbered from 0
+	 */
+	public CompiledNet subnet(int[] transitionIndices, int[] placeIndices) {
+		int[] index = new int[placeCount];	// Place within the subnet
+		int[] subMarking = new int[placeIndices.length];
+		for (int p=0; p<placeIndices.length; p++) {
+			index[placeIndices[p]] = p;
+			subMarking[p] = marking[placeIndices[p]];
+		}
+		int[] subPreStart = new int[transitionIndices.length + 1];
+		int[] subPostStart = new int[transitionIndices.length + 1];
+		for (int t=0; t<transitionIndices.length; t++) {
+			int u = transitionIndices[t];
+			subPreStart[t + 1] = subPreStart[t] + preStart[u + 1] - preStart[u];
+			subPostStart[t + 1] = subPostStart[t] + postStart[u + 1] - postStart[u];
+		}
+		int[] subPrePlace = new int[subPreStart[transitionIndices.length]];
+		int[] subPreWeight = new int[subPrePlace.length];
+		int[] subPostPlace = new int[subPostStart[transitionIndices.length]];
+		int[] subPostWeight = new int[subPostPlace.length];
+		for (int t=0; t<transitionIndices.length; t++) {
+			int u = transitionIndices[t];
+			for (int a=preStart[u], k=subPreStart[t]; a<preStart[u + 1]; a++, k++) {
+				subPrePlace[k] = index[prePlace[a]];
+				subPreWeight[k] = preWeight[a];
+			}
+			for (int a=postStart[u], k=subPostStart[t]; a<postStart[u + 1]; a++, k++) {
+				subPostPlace[k] = index[postPlace[a]];
+				subPostWeight[k] = postWeight[a];
+			}
+		}
+		return new CompiledNet(subMarking, subPreStart, subPrePlace, subPreWeight, subPostStart, subPostPlace, subPostWeight);
+	}
+
+	/**
+	 * Builds the place->consumer transitions index by transposing the input arcs
+	 */
+	private void indexConsumers() {
+		consumerStart = new int[placeCount + 1];
+		consumerTransition = new int[prePlace.length];
+		consumerWeight = new int[prePlace.length];
+		for (int a=0; a<prePlace.length; a++) {
+			consumerStart[prePlace[a] + 1]++;
+		}
+		for (int p=0; p<placeCount; p++) {
+			consumerStart[p + 1] += consumerStart[p];
+		}
+		int[] fill = consumerStart.clone();
+		for (int t=0; t<transitionCount; t++) {
+			for (int a=preStart[t]; a<preStart[t + 1]; a++) {
+				consumerTransition[fill[prePlace[a]]] = t;
+				consumerWeight[fill[prePlace[a]]++] = preWeight[a];
+			}
+		}
+	}
+
+	/**
+	 * Checks whether transition t is enabled in the given marking
+	 * @param t index of transition
+	 * @param m marking
+	 * @return true, if every input place holds at least the weight of its arc
+	 */
+	public boolean isEnabled(int t, int[] m) {
+		for (int a=preStart[t]; a<preStart[t + 1]; a++) {
+			if (m[prePlace[a]] < preWeight[a]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the tokens consumed by transition t from the given marking
+	 * @param t index of transition
+	 * @param m marking
+	 */
+	public void consume(int t, int[] m) {
+		for (int a=preStart[t]; a<preStart[t + 1]; a++) {
+			m[prePlace[a]] -= preWeight[a];
+		}
+	}
+
+	/**
+	 * Adds the tokens produced by transition t to the given marking
+	 * @param t index of transition
+	 * @param m marking
+	 */
+	public void produce(int t, int[] m) {
+		for (int a=postStart[t]; a<postStart[t + 1]; a++) {
+			m[postPlace[a]] += postWeight[a];
+		}
+	}
+
+	/**
+	 * Writes a marking back into the tokens column and which transitions
+	 * have fired into the fired column
+	 * @param petriNet Petri net this net was compiled from
+	 * @param m marking to write
+	 * @param fired fired[t] is true, if transition t fired in the last step
+	 */
+	public void writeBack(CyNetwork petriNet, int[] m, boolean[] fired) {
+		for (int p=0; p<placeCount; p++) {
+			CyRow row = petriNet.getDefaultNodeTable().getRow(places[p].getSUID());
+			row.set("tokens", m[p]);
+		}
+		for (int t=0; t<transitionCount; t++) {
+			CyRow row = petriNet.getDefaultNodeTable().getRow(transitions[t].getSUID());
+			row.set("fired", fired[t] ? 1 : 0);
+		}
+	}
+}
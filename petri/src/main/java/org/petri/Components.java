@@ -0,0 +1,136 @@
+package org.petri;
+
+/**
+ * Connected components of a Petri net or of an incidence matrix, found by union-find
+ * over the arcs or the non-zero entries in O(|E| * alpha). Components do not share any
+ * node, so they can be analysed independently: the invariants of a matrix are the
+ * invariants of its blocks, and in synchronous firing every component fires on its own.
+ * Rows are transitions and columns places, unless built from a transposed matrix.
+ * Components are numbered in order of their smallest row, followed by those made of
+ * columns only, and list their rows and columns in ascending order.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class Components {
+
+	protected final int count;
+	protected final int[][] rows;	// Rows of each component
+	protected final int[][] cols;	// Columns of each component
+
+	/**
+	 * Constructor, collects the components from a union-find forest
+	 * @param rowCount number of rows
+	 * @param colCount number of columns
+	 * @param parent union-find forest, rows first, then columns
+	 */
+	private Components(int rowCount, int colCount, int[] parent) {
+		int[] component = new int[parent.length];	// Component of every root
+		int[] rowSize = new int[parent.length];
+		int[] colSize = new int[parent.length];
+		int components = 0;
+		for (int i=0; i<parent.length; i++) {
+			int root = find(parent, i);
+			if (root == i) {
+				component[i] = -1;
+			}
+		}
+		for (int i=0; i<parent.length; i++) {	// Rows come first, so components are numbered by their smallest row
+			int root = find(parent, i);
+			if (component[root] < 0) {
+				component[root] = components++;
+			}
+			if (i < rowCount) {
+				rowSize[component[root]]++;
+			}
+			else {
+				colSize[component[root]]++;
+			}
+		}
+		count = components;
+		rows = new int[count][];
+		cols = new int[count][];
+		for (int c=0; c<count; c++) {
+			rows[c] = new int[rowSize[c]];
+			cols[c] = new int[colSize[c]];
+			rowSize[c] = 0;
+			colSize[c] = 0;
+		}
+		for (int i=0; i<parent.length; i++) {
+			int c = component[find(parent, i)];
+			if (i < rowCount) {
+				rows[c][rowSize[c]++] = i;
+			}
+			else {
+				cols[c][colSize[c]++] = i - rowCount;
+			}
+		}
+	}
+
+	/**
+	 * Finds the components of a compiled net, connected by its arcs
+	 * @param net compiled Petri net
+	 * @return components with transitions as rows and places as columns
+	 */
+	public static Components of(CompiledNet net) {
+		int[] parent = forest(net.transitionCount + net.placeCount);
+		for (int t=0; t<net.transitionCount; t++) {
+			for (int a=net.preStart[t]; a<net.preStart[t + 1]; a++) {
+				union(parent, t, net.transitionCount + net.prePlace[a]);
+			}
+			for (int a=net.postStart[t]; a<net.postStart[t + 1]; a++) {
+				union(parent, t, net.transitionCount + net.postPlace[a]);
+			}
+		}
+		return new Components(net.transitionCount, net.placeCount, parent);
+	}
+
+	/**
+	 * Finds the independent blocks of an incidence matrix, connected by its non-zero entries.
+	 * Self-loops that cancel out do not connect anything here.
+	 * @param incidence sparse incidence matrix
+	 * @return components with the rows and columns of the matrix
+	 */
+	public static Components of(Incidence incidence) {
+		int[] parent = forest(incidence.rowCount + incidence.colCount);
+		for (int r=0; r<incidence.rowCount; r++) {
+			for (int i=incidence.rowStart[r]; i<incidence.rowStart[r + 1]; i++) {
+				union(parent, r, incidence.rowCount + incidence.col[i]);
+			}
+		}
+		return new Components(incidence.rowCount, incidence.colCount, parent);
+	}
+
+	private static int[] forest(int size) {
+		int[] parent = new int[size];
+		for (int i=0; i<size; i++) {
+			parent[i] = i;
+		}
+		return parent;
+	}
+
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];	// Path halving
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private static void union(int[] parent, int a, int b) {
+		a = find(parent, a);
+		b = find(parent, b);
+		if (a < b) {	// Smaller index as root keeps the numbering independent of the arc order
+			parent[b] = a;
+		}
+		else if (b < a) {
+			parent[a] = b;
+		}
+	}
+
+	/**
+	 * @return number of components
+	 */
+	public int getCount() {
+		return count;
+	}
+}
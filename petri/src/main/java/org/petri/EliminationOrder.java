@@ -0,0 +1,161 @@
+package org.petri;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Strategy for the order in which the FarkasEngine eliminates the columns of the
+ * incidence matrix. The order does not change the resulting invariants, but it decides
+ * how large the intermediate matrix grows, which may differ by orders of magnitude.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public abstract class EliminationOrder {
+
+	/**
+	 * Called once before the first elimination
+	 * @param rows initial rows of the matrix [C | I]
+	 * @param colCount number of columns to eliminate
+	 */
+	public void init(ArrayList<FarkasEngine.Row> rows, int colCount) {
+	}
+
+	/**
+	 * Picks the next column to eliminate
+	 * @param rows current rows
+	 * @param eliminated columns eliminated so far
+	 * @return index of a column that was not eliminated yet
+	 */
+	public abstract int next(ArrayList<FarkasEngine.Row> rows, boolean[] eliminated);
+
+	/**
+	 * @return name of the strategy for reports
+	 */
+	public abstract String describe();
+
+	/**
+	 * @return strategy of the same kind for another computation, this if it keeps no state
+	 */
+	public EliminationOrder copy() {
+		return this;
+	}
+
+	/**
+	 * Estimated change of the row count when eliminating the column: |pos|*|neg| - |pos| - |neg|
+	 */
+	static long cost(ArrayList<FarkasEngine.Row> rows, int col) {
+		long pos = 0;
+		long neg = 0;
+		for (FarkasEngine.Row row : rows) {
+			int sign = row.signum(col);
+			if (sign > 0) {
+				pos++;
+			}
+			else if (sign < 0) {
+				neg++;
+			}
+		}
+		return pos * neg - pos - neg;
+	}
+
+	/**
+	 * Picks the column with the least cost on the current matrix at every step.
+	 * Ties are broken in favour of the higher index, like the fixed order.
+	 */
+	static class Greedy extends EliminationOrder {
+		public int next(ArrayList<FarkasEngine.Row> rows, boolean[] eliminated) {
+			int best = -1;
+			long bestCost = Long.MAX_VALUE;
+			for (int col = eliminated.length - 1; col > -1; col--) {
+				if (eliminated[col]) {
+					continue;
+				}
+				long cost = cost(rows, col);
+				if (best < 0 || cost < bestCost) {
+					best = col;
+					bestCost = cost;
+				}
+			}
+			return best;
+		}
+
+		public String describe() {
+			return "greedy (least |pos|*|neg| - |pos| - |neg| per step)";
+		}
+	}
+
+	/**
+	 * Eliminates the columns from the last to the first one
+	 */
+	static class Reverse extends EliminationOrder {
+		public int next(ArrayList<FarkasEngine.Row> rows, boolean[] eliminated) {
+			int col = eliminated.length - 1;
+			while (eliminated[col]) {
+				col--;
+			}
+			return col;
+		}
+
+		public String describe() {
+			return "fixed (reverse place order)";
+		}
+	}
+
+	/**
+	 * Sorts the columns once by their cost on the initial matrix and eliminates them in that order
+	 */
+	static class Static extends EliminationOrder {
+		private int[] order;
+		private int position;
+
+		public void init(ArrayList<FarkasEngine.Row> rows, int colCount) {
+			final long[] costs = new long[colCount];
+			ArrayList<Integer> cols = new ArrayList<Integer>();
+			for (int col=0; col<colCount; col++) {
+				costs[col] = cost(rows, col);
+				cols.add(col);
+			}
+			Collections.sort(cols, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					return costs[a] != costs[b] ? Long.compare(costs[a], costs[b]) : Integer.compare(b, a);
+				}
+			});
+			order = new int[colCount];
+			for (int i=0; i<colCount; i++) {
+				order[i] = cols.get(i);
+			}
+			position = 0;
+		}
+
+		public int next(ArrayList<FarkasEngine.Row> rows, boolean[] eliminated) {
+			while (eliminated[order[position]]) {	// Columns satisfied from the start
+				position++;
+			}
+			return order[position++];
+		}
+
+		public String describe() {
+			return "static (sorted by initial |pos|*|neg| - |pos| - |neg|)";
+		}
+
+		public EliminationOrder copy() {
+			return new Static();
+		}
+	}
+
+	/**
+	 * Creates a strategy by the name shown in the panel
+	 * @param name "Greedy", "Fixed" or "Static"
+	 * @return strategy, greedy for unknown names
+	 */
+	public static EliminationOrder forName(String name) {
+		if ("Fixed".equals(name)) {
+			return new Reverse();
+		}
+		if ("Static".equals(name)) {
+			return new Static();
+		}
+		return new Greedy();
+	}
+}
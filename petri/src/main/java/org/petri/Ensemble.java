@@ -0,0 +1,204 @@
+package org.petri;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+
+/**
+ * Monte Carlo ensemble of independent simulation runs on a CompiledNet.
+ * Replicates are split recursively over a fork-join pool, every replicate
+ * has its own marking and its own SplittableRandom derived from a single seed,
+ * so the results only depend on the seed and not on the number of threads.
+ * Aggregated are the final token amounts per place (mean, variance, min, max)
+ * and how often each transition fired per step on average.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class Ensemble {
+
+	static final int LEAF_SIZE = 1; // Replicates per fork-join leaf, replicates are expensive enough on their own
+	private final CompiledNet net;
+	private final boolean firingMode;
+	private final boolean random;
+	private final int steps;
+	private final int replicates;
+	private final long seed;
+	private volatile boolean cancelled;
+	protected double[] mean;
+	protected double[] variance;
+	protected int[] min;
+	protected int[] max;
+	protected double[] frequency;
+
+	/**
+	 * Constructor
+	 * @param net compiled Petri net, every replicate starts at its marking
+	 * @param firingMode synchronous (true) or asynchronous (false) firing
+	 * @param random randomize firing order
+	 * @param steps how often each replicate fires
+	 * @param replicates number of independent runs
+	 * @param seed seed for the random number generators of all replicates
+	 */
+	public Ensemble(CompiledNet net, boolean firingMode, boolean random, int steps, int replicates, long seed) {
+		this.net = net;
+		this.firingMode = firingMode;
+		this.random = random;
+		this.steps = steps;
+		this.replicates = replicates;
+		this.seed = seed;
+	}
+
+	/**
+	 * Running mean and sum of squared deviations (M2) over a range of replicates, by
+	 * Welford's method, which stays accurate for large token amounts with a small spread
+	 */
+	private class Stats {
+		final double[] mean = new double[net.placeCount];
+		final double[] m2 = new double[net.placeCount];
+		final int[] min = new int[net.placeCount];
+		final int[] max = new int[net.placeCount];
+		final long[] fires = new long[net.transitionCount];
+		int count;
+
+		void add(Simulator simulator) {
+			for (int p=0; p<net.placeCount; p++) {
+				int m = simulator.marking[p];
+				double delta = m - mean[p];
+				mean[p] += delta / (count + 1);
+				m2[p] += delta * (m - mean[p]);
+				if (count == 0 || m < min[p]) {
+					min[p] = m;
+				}
+				if (count == 0 || m > max[p]) {
+					max[p] = m;
+				}
+			}
+			for (int t=0; t<net.transitionCount; t++) {
+				fires[t] += simulator.fireCounts[t];
+			}
+			count++;
+		}
+
+		/**
+		 * Adds the replicates of another range, combining mean and M2 by Chan's formula
+		 */
+		void merge(Stats other) {
+			double n = (double) count + other.count;
+			for (int p=0; p<net.placeCount; p++) {
+				if (other.count > 0) {
+					double delta = other.mean[p] - mean[p];
+					mean[p] += delta * other.count / n;
+					m2[p] += other.m2[p] + delta * delta * ((double) count * other.count / n);
+				}
+				if (count == 0 || (other.count > 0 && other.min[p] < min[p])) {
+					min[p] = other.min[p];
+				}
+				if (count == 0 || (other.count > 0 && other.max[p] > max[p])) {
+					max[p] = other.max[p];
+				}
+			}
+			for (int t=0; t<net.transitionCount; t++) {
+				fires[t] += other.fires[t];
+			}
+			count += other.count;
+		}
+	}
+
+	/**
+	 * Runs the replicates [from, to), splitting the range in halves until it is small enough
+	 */
+	private class ReplicateTask extends RecursiveTask<Stats> {
+		private static final long serialVersionUID = 5279218367420147733L;
+		private final int from;
+		private final int to;
+		private final SplittableRandom rnd;
+
+		ReplicateTask(int from, int to, SplittableRandom rnd) {
+			this.from = from;
+			this.to = to;
+			this.rnd = rnd;
+		}
+
+		protected Stats compute() {
+			if (to - from <= LEAF_SIZE) {
+				Stats stats = new Stats();
+				for (int r=from; r<to && !cancelled; r++) {
+					Simulator simulator = new Simulator(net, firingMode, random, rnd.split());
+					for (int s=0; s<steps && !cancelled; s++) {
+						simulator.step();
+					}
+					stats.add(simulator);
+				}
+				return stats;
+			}
+			int mid = (from + to) >>> 1;
+			ReplicateTask left = new ReplicateTask(from, mid, rnd.split());
+			ReplicateTask right = new ReplicateTask(mid, to, rnd.split());
+			left.fork();
+			Stats stats = right.compute();
+			stats.merge(left.join());
+			return stats;
+		}
+	}
+
+	/**
+	 * Runs all replicates and aggregates their results
+	 * @param pool fork-join pool to run on
+	 */
+	public void run(ForkJoinPool pool) {
+		Stats stats = pool.invoke(new ReplicateTask(0, replicates, new SplittableRandom(seed)));
+		int n = Math.max(stats.count, 1);
+		mean = stats.mean;
+		variance = new double[net.placeCount];
+		for (int p=0; p<net.placeCount; p++) {
+			// Sample variance, 0 for a single replicate
+			variance[p] = n > 1 ? stats.m2[p] / (n - 1) : 0.0;
+		}
+		min = stats.min;
+		max = stats.max;
+		frequency = new double[net.transitionCount];
+		for (int t=0; t<net.transitionCount; t++) {
+			frequency[t] = steps == 0 ? 0.0 : (double) stats.fires[t] / ((double) n * steps);
+		}
+	}
+
+	/**
+	 * Stops all replicates, the results of runs stopped early are still aggregated
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Writes the aggregated results into the node table, creating the columns if necessary.
+	 * Places receive mean tokens, token variance, min tokens and max tokens,
+	 * transitions receive their firing frequency (mean firings per step).
+	 * @param petriNet Petri net the ensemble was compiled from
+	 */
+	public void writeBack(CyNetwork petriNet) {
+		CyTable nodeTable = petriNet.getDefaultNodeTable();
+		if (nodeTable.getColumn("mean tokens") == null) {
+			nodeTable.createColumn("mean tokens", Double.class, false);
+			nodeTable.createColumn("token variance", Double.class, false);
+			nodeTable.createColumn("min tokens", Integer.class, false);
+			nodeTable.createColumn("max tokens", Integer.class, false);
+		}
+		if (nodeTable.getColumn("firing frequency") == null) {
+			nodeTable.createColumn("firing frequency", Double.class, false);
+		}
+		for (int p=0; p<net.placeCount; p++) {
+			CyRow row = nodeTable.getRow(net.places[p].getSUID());
+			row.set("mean tokens", mean[p]);
+			row.set("token variance", variance[p]);
+			row.set("min tokens", min[p]);
+			row.set("max tokens", max[p]);
+		}
+		for (int t=0; t<net.transitionCount; t++) {
+			nodeTable.getRow(net.transitions[t].getSUID()).set("firing frequency", frequency[t]);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package org.petri;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * Task for running a Monte Carlo ensemble of simulations in the background
+ * and storing its statistics in the node table
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class EnsembleTask extends AbstractTask {
+
+	private CyNetwork petriNet;
+	private PetriUtils petriUtils;
+	private int times;
+	private int replicates;
+	private boolean firingMode;
+	private boolean random;
+	private Ensemble ensemble;
+
+	/**
+	 * Constructor
+	 * @param petriNet Petri net to be simulated
+	 * @param petriUtils Utilities for Petri Net
+	 * @param times how often each replicate fires
+	 * @param replicates number of independent runs
+	 * @param firingMode synchronous (true) or asynchronous (false) firing
+	 * @param random randomize firing order
+	 */
+	public EnsembleTask(CyNetwork petriNet, PetriUtils petriUtils, int times, int replicates,
+			boolean firingMode, boolean random) {
+		this.petriNet = petriNet;
+		this.petriUtils = petriUtils;
+		this.times = times;
+		this.replicates = replicates;
+		this.firingMode = firingMode;
+		this.random = random;
+	}
+
+	/**
+	 * Run all replicates starting at the current marking, then write
+	 * per place and per transition statistics to the node table.
+	 */
+	public void run(TaskMonitor taskMonitor) throws Exception {
+		taskMonitor.setTitle("Running ensemble simulation");
+		taskMonitor.setStatusMessage(replicates + " replicates of " + times + " steps on "
+				+ ForkJoinPool.commonPool().getParallelism() + " threads");
+		CompiledNet net = new CompiledNet(petriNet, petriUtils.getTransitions(), petriUtils.getPlaces());
+		ensemble = new Ensemble(net, firingMode, random, times, replicates, System.nanoTime());
+		long start = System.currentTimeMillis();
+		ensemble.run(ForkJoinPool.commonPool());
+		if (cancelled) {
+			return;
+		}
+		ensemble.writeBack(petriNet);
+		taskMonitor.setProgress(1.0);
+		taskMonitor.setStatusMessage("Finished " + replicates + " replicates in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+		if (ensemble != null) {
+			ensemble.cancel();
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package org.petri;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.AbstractTaskFactory;
+import org.cytoscape.work.TaskIterator;
+
+/**
+ * Factory for EnsembleTasks
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class EnsembleTaskFactory extends AbstractTaskFactory {
+	private final CyNetwork petriNet;
+	private final PetriUtils petriUtils;
+	private final int times;
+	private final int replicates;
+	private final boolean firingMode;
+	private final boolean random;
+
+	/**
+	 * Constructor
+	 * @param petriNet Petri net to be simulated
+	 * @param petriUtils Utilities for Petri Net
+	 * @param times how often each replicate fires
+	 * @param replicates number of independent runs
+	 * @param firingMode synchronous (true) or asynchronous (false) firing
+	 * @param random randomize firing order
+	 */
+	public EnsembleTaskFactory(final CyNetwork petriNet, final PetriUtils petriUtils, int times, int replicates,
+			boolean firingMode, boolean random) {
+		this.petriNet = petriNet;
+		this.petriUtils = petriUtils;
+		this.times = times;
+		this.replicates = replicates;
+		this.firingMode = firingMode;
+		this.random = random;
+	}
+
+	public TaskIterator createTaskIterator(){
+		return new TaskIterator(new EnsembleTask(petriNet, petriUtils, times, replicates, firingMode, random));
+	}
+}
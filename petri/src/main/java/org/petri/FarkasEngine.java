@@ -0,0 +1,680 @@
+package org.petri;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes invariants with the Farkas algorithm (Fourier-Motzkin elimination on the
+ * matrix [C | I]). Every row holds the remaining incidence part followed by the
+ * identity part, i.e. the coefficients of the invariant it represents. Columns of the
+ * incidence part are eliminated one at a time by combining each row with a positive
+ * entry with each row with a negative entry, rows with a zero entry are kept.
+ * Rows are packed into long[] and divided by the gcd of their entries after every
+ * combination, so coefficients stay as small as possible. Should a combination
+ * overflow long, that row alone continues with BigInteger entries.
+ * Only invariants with minimal support are kept: every row carries the support of its
+ * identity part as bitset, and a pair of rows is only combined if no other row has a
+ * support contained in the union of both supports (Martinez-Silva). Thus the rows are
+ * always exactly the minimal-support invariants of the columns eliminated so far.
+ * The combinations of a step may be split over a fork-join pool by ranges of positive
+ * rows. Every worker fills its own buffer and the buffers are concatenated in range
+ * order, so the result is identical to the sequential computation.
+ * A row whose remaining incidence part is zero is never combined again, and having
+ * minimal support it is never dropped either, so it can be handed out as invariant
+ * before the computation has finished.
+ * Instead of the identity, the computation may also start from the minimal invariants
+ * of some of the columns, which are then already eliminated. This continues an earlier
+ * computation after columns were added to the matrix, see InvariantBasis.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class FarkasEngine {
+
+	private final int rowCount;	// Rows of the incidence matrix, e.g. transitions for T-invariants
+	private final int colCount;	// Columns of the incidence matrix, e.g. places for T-invariants
+	static final int PAIRS_PER_TASK = 4096;	// Combinations below which a fork-join task does not split any further
+	private final EliminationOrder order;
+	private final int parallelism;
+	private ForkJoinPool pool;
+	private ArrayList<Row> rows;
+	private boolean[] eliminated;
+	private int steps;	// Number of finished steps
+	private int toEliminate;	// Number of columns not eliminated at the start
+	private int startRows;	// Number of rows at the start
+	private long maxRows = Long.MAX_VALUE;
+	private final AtomicLong created = new AtomicLong();	// Rows of the current step, shared by all workers
+	private AtomicLong sharedRows;	// Rows of the current steps of all engines sharing the limit, null if not shared
+	private volatile boolean cancelled;
+	private volatile boolean exceeded;
+	protected int[] stepColumn;	// Column eliminated in each step
+	protected int[] stepPos;	// Rows with positive entry in that column
+	protected int[] stepNeg;	// Rows with negative entry in that column
+	protected int[] stepRows;	// Rows after the step
+
+	/**
+	 * A row of the matrix [C | I], either with long entries or, after an overflow, with BigInteger entries
+	 */
+	static final class Row {
+		long[] small;
+		BigInteger[] big;
+		long[] support;	// Bitset of the non-zero entries of the identity part
+		boolean confirmed;	// Already handed out by takeConfirmed()
+
+		Row(long[] small) {
+			this.small = small;
+		}
+
+		Row(BigInteger[] big) {
+			this.big = big;
+			// Go back to long entries whenever possible
+			for (BigInteger b : big) {
+				if (b.bitLength() > 63) {
+					return;
+				}
+			}
+			this.small = new long[big.length];
+			for (int i=0; i<big.length; i++) {
+				small[i] = big[i].longValue();
+			}
+			this.big = null;
+		}
+
+		int signum(int col) {
+			return small != null ? Long.signum(small[col]) : big[col].signum();
+		}
+
+		BigInteger get(int col) {
+			return small != null ? BigInteger.valueOf(small[col]) : big[col];
+		}
+
+		BigInteger[] toBig() {
+			if (big != null) {
+				return big;
+			}
+			BigInteger[] b = new BigInteger[small.length];
+			for (int i=0; i<small.length; i++) {
+				b[i] = BigInteger.valueOf(small[i]);
+			}
+			return b;
+		}
+	}
+
+	/**
+	 * Constructor, eliminates columns in greedy order
+	 * @param rowCount number of rows of the incidence matrix, i.e. the size of the invariants
+	 * @param colCount number of columns of the incidence matrix, i.e. the number of columns to eliminate
+	 */
+	public FarkasEngine(int rowCount, int colCount) {
+		this(rowCount, colCount, new EliminationOrder.Greedy());
+	}
+
+	/**
+	 * Constructor
+	 * @param rowCount number of rows of the incidence matrix, i.e. the size of the invariants
+	 * @param colCount number of columns of the incidence matrix, i.e. the number of columns to eliminate
+	 * @param order strategy picking the next column to eliminate
+	 */
+	public FarkasEngine(int rowCount, int colCount, EliminationOrder order) {
+		this(rowCount, colCount, order, 1);
+	}
+
+	/**
+	 * Constructor
+	 * @param rowCount number of rows of the incidence matrix, i.e. the size of the invariants
+	 * @param colCount number of columns of the incidence matrix, i.e. the number of columns to eliminate
+	 * @param order strategy picking the next column to eliminate
+	 * @param parallelism number of threads combining rows, 1 for sequential computation
+	 */
+	public FarkasEngine(int rowCount, int colCount, EliminationOrder order, int parallelism) {
+		this.rowCount = rowCount;
+		this.colCount = colCount;
+		this.order = order;
+		this.parallelism = Math.max(parallelism, 1);
+	}
+
+	/**
+	 * Builds the initial matrix [C | I]
+	 * @param incidence sparse incidence matrix with rowCount rows and colCount columns
+	 * @return list of rows
+	 */
+	ArrayList<Row> initialRows(Incidence incidence) {
+		ArrayList<Row> rows = new ArrayList<Row>(rowCount);
+		for (int r=0; r<rowCount; r++) {
+			long[] row = new long[colCount + rowCount];
+			for (int i=incidence.rowStart[r]; i<incidence.rowStart[r + 1]; i++) {
+				row[incidence.col[i]] = incidence.value[i];
+			}
+			row[colCount + r] = 1;
+			Row initial = new Row(row);
+			initial.support = new long[(rowCount + 63) >>> 6];
+			initial.support[r >>> 6] |= 1L << r;
+			rows.add(initial);
+		}
+		return rows;
+	}
+
+	/**
+	 * Builds the initial matrix [C*x | x] from the minimal invariants x of some of the columns
+	 * @param incidence sparse incidence matrix with rowCount rows and colCount columns
+	 * @param invariants minimal invariants of the satisfied columns, as long[] of length rowCount
+	 * @param satisfied columns all invariants are zero in
+	 * @return list of rows
+	 * @throws IllegalArgumentException if an invariant is not zero in a satisfied column
+	 */
+	ArrayList<Row> seedRows(Incidence incidence, ArrayList<long[]> invariants, boolean[] satisfied) {
+		ArrayList<Row> rows = new ArrayList<Row>(invariants.size());
+		for (long[] invariant : invariants) {
+			long[] row = new long[colCount + rowCount];
+			Row seed;
+			try {
+				for (int r=0; r<rowCount; r++) {
+					if (invariant[r] != 0) {
+						for (int i=incidence.rowStart[r]; i<incidence.rowStart[r + 1]; i++) {
+							row[incidence.col[i]] = Math.addExact(row[incidence.col[i]], Math.multiplyExact(invariant[r], incidence.value[i]));
+						}
+					}
+				}
+				System.arraycopy(invariant, 0, row, colCount, rowCount);
+				seed = new Row(row);
+			}
+			catch (ArithmeticException e) {
+				// Overflow, compute this row with BigInteger entries
+				BigInteger[] big = new BigInteger[colCount + rowCount];
+				for (int i=0; i<big.length; i++) {
+					big[i] = i < colCount ? BigInteger.ZERO : BigInteger.valueOf(invariant[i - colCount]);
+				}
+				for (int r=0; r<rowCount; r++) {
+					for (int i=incidence.rowStart[r]; i<incidence.rowStart[r + 1]; i++) {
+						big[incidence.col[i]] = big[incidence.col[i]].add(BigInteger.valueOf(invariant[r]).multiply(BigInteger.valueOf(incidence.value[i])));
+					}
+				}
+				seed = new Row(big);
+			}
+			seed.support = new long[(rowCount + 63) >>> 6];
+			for (int r=0; r<rowCount; r++) {
+				if (invariant[r] != 0) {
+					seed.support[r >>> 6] |= 1L << r;
+				}
+			}
+			for (int c=0; c<colCount; c++) {
+				if (satisfied[c] && seed.signum(c) != 0) {
+					throw new IllegalArgumentException("Invariant is not zero in satisfied column " + c);
+				}
+			}
+			rows.add(seed);
+		}
+		return rows;
+	}
+
+	/**
+	 * Computes the invariants of the given incidence matrix
+	 * @param incidence sparse incidence matrix with rowCount rows and colCount columns
+	 * @return invariants as long[] of length rowCount
+	 * @throws ArithmeticException if a coefficient of a resulting invariant does not fit into long
+	 */
+	public ArrayList<long[]> compute(Incidence incidence) {
+		start(incidence);
+		try {
+			while (hasNext()) {
+				step();
+			}
+		}
+		finally {
+			shutdown();
+		}
+		return finish();
+	}
+
+	/**
+	 * Builds the initial matrix, after that the columns are eliminated one at a time by step()
+	 * @param incidence sparse incidence matrix with rowCount rows and colCount columns
+	 */
+	public void start(Incidence incidence) {
+		start(initialRows(incidence), new boolean[colCount]);
+	}
+
+	/**
+	 * Builds the initial matrix from the minimal invariants of some of the columns, after that
+	 * the remaining columns are eliminated one at a time by step()
+	 * @param incidence sparse incidence matrix with rowCount rows and colCount columns
+	 * @param invariants all minimal invariants of the satisfied columns, as long[] of length rowCount
+	 * @param satisfied columns all invariants are zero in, these are not eliminated again
+	 * @throws IllegalArgumentException if an invariant is not zero in a satisfied column
+	 */
+	public void start(Incidence incidence, ArrayList<long[]> invariants, boolean[] satisfied) {
+		start(seedRows(incidence, invariants, satisfied), satisfied.clone());
+	}
+
+	private void start(ArrayList<Row> rows, boolean[] eliminated) {
+		this.rows = rows;
+		this.eliminated = eliminated;
+		startRows = rows.size();
+		toEliminate = 0;
+		for (boolean e : eliminated) {
+			if (!e) {
+				toEliminate++;
+			}
+		}
+		steps = 0;
+		stepColumn = new int[colCount];
+		stepPos = new int[colCount];
+		stepNeg = new int[colCount];
+		stepRows = new int[colCount];
+		order.init(rows, colCount);
+		if (parallelism > 1) {
+			pool = new ForkJoinPool(parallelism);
+		}
+	}
+
+	/**
+	 * @return true, if there are columns left to eliminate and the computation was neither cancelled nor aborted
+	 */
+	public boolean hasNext() {
+		return steps < toEliminate && !cancelled && !exceeded;
+	}
+
+	/**
+	 * Eliminates the next column. If the computation is cancelled or exceeds the row limit
+	 * during the step, the step is left unfinished and hasNext() returns false.
+	 * @return index of the eliminated column
+	 */
+	public int step() {
+		int col = order.next(rows, eliminated);
+		eliminated[col] = true;
+		stepColumn[steps] = col;
+		ArrayList<Row> next = eliminate(rows, col, steps);
+		if (cancelled || exceeded) {
+			return col;
+		}
+		rows = next;
+		stepRows[steps] = rows.size();
+		steps++;
+		return col;
+	}
+
+	/**
+	 * Collects the rows that became invariants since the last call, i.e. whose incidence
+	 * part is zero in all columns that are not eliminated yet
+	 * @return new invariants as long[] of length rowCount
+	 * @throws ArithmeticException if a coefficient of an invariant does not fit into long
+	 */
+	public ArrayList<long[]> takeConfirmed() {
+		ArrayList<long[]> confirmed = new ArrayList<long[]>();
+		for (Row row : rows) {
+			if (row.confirmed) {
+				continue;
+			}
+			boolean isZero = true;
+			for (int c=0; c<colCount && isZero; c++) {
+				isZero = eliminated[c] || row.signum(c) == 0;
+			}
+			if (isZero) {
+				row.confirmed = true;
+				confirmed.add(identityPart(row));
+			}
+		}
+		return confirmed;
+	}
+
+	/**
+	 * Releases the threads of the computation, may be called more than once
+	 */
+	public void shutdown() {
+		if (sharedRows != null) {	// Leaves the limit to the engines still running
+			sharedRows.addAndGet(-created.getAndSet(0));
+		}
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * @return invariants of the finished computation as long[] of length rowCount
+	 * @throws ArithmeticException if a coefficient of a resulting invariant does not fit into long
+	 */
+	public ArrayList<long[]> finish() {
+		shutdown();
+		return invariants(rows);
+	}
+
+	/**
+	 * Stops the computation, a running step returns as soon as possible
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Limits the number of rows of the intermediate matrix, the computation is aborted if a step exceeds it
+	 * @param maxRows largest allowed number of rows, 0 for no limit
+	 */
+	public void setMaxRows(long maxRows) {
+		this.maxRows = maxRows <= 0 ? Long.MAX_VALUE : maxRows;
+	}
+
+	/**
+	 * Limits the rows of the intermediate matrices of several engines running at the same
+	 * time together, the computation is aborted if a step exceeds what the others left
+	 * @param maxRows largest allowed number of rows of all engines, 0 for no limit
+	 * @param sharedRows counter shared by all engines, starting at 0
+	 */
+	public void setMaxRows(long maxRows, AtomicLong sharedRows) {
+		setMaxRows(maxRows);
+		this.sharedRows = sharedRows;
+	}
+
+	/**
+	 * Counts rows created in the current step
+	 * @return true, if the rows exceed the limit
+	 */
+	private boolean count(long rows) {
+		long total = created.addAndGet(rows);
+		if (sharedRows != null) {
+			total = sharedRows.addAndGet(rows);
+		}
+		return total > maxRows;
+	}
+
+	/**
+	 * @return true, if all columns have been eliminated
+	 */
+	public boolean isFinished() {
+		return steps == toEliminate;
+	}
+
+	/**
+	 * @return true, if the computation was aborted because it exceeded the row limit
+	 */
+	public boolean isExceeded() {
+		return exceeded;
+	}
+
+	/**
+	 * @return number of columns eliminated so far
+	 */
+	public int getSteps() {
+		return steps;
+	}
+
+	/**
+	 * @return number of rows of the current matrix
+	 */
+	public int getRowCount() {
+		return rows.size();
+	}
+
+	/**
+	 * Estimates the heap used by a single row with long entries, including its support and list entry
+	 * @return bytes per row
+	 */
+	public long bytesPerRow() {
+		return 3 * 16 + 8L * (colCount + rowCount) + 8L * ((rowCount + 63) >>> 6) + 8;
+	}
+
+	/**
+	 * Describes the elimination order used and the row counts of every step of the last computation
+	 * @param colNames names of the columns, e.g. the places
+	 * @return report with one line per step
+	 */
+	public String getReport(String[] colNames) {
+		StringBuilder report = new StringBuilder("Elimination order: " + order.describe() + "\n");
+		report.append("Initial rows: " + startRows + "\n");
+		for (int step=0; step<steps; step++) {
+			report.append(describeStep(step, colNames) + "\n");
+		}
+		return report.toString();
+	}
+
+	/**
+	 * @param step number of a finished step
+	 * @param colNames names of the columns, e.g. the places
+	 * @return column and row counts of the step
+	 */
+	public String describeStep(int step, String[] colNames) {
+		return "Step " + (step + 1) + ": " + colNames[stepColumn[step]] + ", " + stepPos[step] + " positive, "
+				+ stepNeg[step] + " negative, " + stepRows[step] + " rows";
+	}
+
+	/**
+	 * @return name of the elimination order
+	 */
+	public String describeOrder() {
+		return order.describe();
+	}
+
+	/**
+	 * Eliminates a single column: rows with a zero entry are kept, each row with a positive
+	 * entry is combined with each row with a negative entry, if the result has minimal support
+	 * @param rows current rows
+	 * @param col column to eliminate
+	 * @param step number of the step, for the report
+	 * @return rows of the next matrix
+	 */
+	ArrayList<Row> eliminate(ArrayList<Row> rows, int col, int step) {
+		ArrayList<Row> pos = new ArrayList<Row>();
+		ArrayList<Row> neg = new ArrayList<Row>();
+		ArrayList<Row> next = new ArrayList<Row>();
+		for (Row row : rows) {
+			int sign = row.signum(col);
+			if (sign > 0) {
+				pos.add(row);
+			}
+			else if (sign < 0) {
+				neg.add(row);
+			}
+			else {
+				next.add(row);
+			}
+		}
+		stepPos[step] = pos.size();
+		stepNeg[step] = neg.size();
+		if (count(next.size() - created.get())) {	// Replaces the rows of the last step
+			exceeded = true;
+			return next;
+		}
+		// Without a pool of its own the step runs on the calling thread, never on the common pool
+		next.addAll(pool != null ? pool.invoke(new CombineTask(rows, pos, neg, col, 0, pos.size()))
+				: combineRange(rows, pos, neg, col, 0, pos.size()));
+		return next;
+	}
+
+	/**
+	 * Combines the positive rows [from, to) with all negative rows on the calling thread
+	 * @return combinations with minimal support
+	 */
+	private ArrayList<Row> combineRange(ArrayList<Row> rows, ArrayList<Row> pos, ArrayList<Row> neg, int col, int from, int to) {
+		ArrayList<Row> buffer = new ArrayList<Row>();
+		for (int i=from; i<to && !cancelled && !exceeded; i++) {
+			Row p = pos.get(i);
+			int before = buffer.size();
+			for (Row n : neg) {
+				long[] support = union(p.support, n.support);
+				if (isMinimal(support, rows, p, n)) {
+					Row row = combine(p, n, col);
+					row.support = support;
+					buffer.add(row);
+				}
+			}
+			if (count(buffer.size() - before)) {
+				exceeded = true;
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * Combines the positive rows [from, to) with all negative rows, splitting the range in
+	 * halves as long as it holds enough combinations
+	 */
+	private class CombineTask extends RecursiveTask<ArrayList<Row>> {
+		private static final long serialVersionUID = -3170473046402526398L;
+		private final ArrayList<Row> rows;
+		private final ArrayList<Row> pos;
+		private final ArrayList<Row> neg;
+		private final int col;
+		private final int from;
+		private final int to;
+
+		CombineTask(ArrayList<Row> rows, ArrayList<Row> pos, ArrayList<Row> neg, int col, int from, int to) {
+			this.rows = rows;
+			this.pos = pos;
+			this.neg = neg;
+			this.col = col;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected ArrayList<Row> compute() {
+			if (to - from < 2 || (long) (to - from) * neg.size() <= PAIRS_PER_TASK) {
+				return combineRange(rows, pos, neg, col, from, to);
+			}
+			int mid = (from + to) >>> 1;
+			CombineTask left = new CombineTask(rows, pos, neg, col, from, mid);
+			CombineTask right = new CombineTask(rows, pos, neg, col, mid, to);
+			left.fork();
+			ArrayList<Row> rightRows = right.compute();
+			ArrayList<Row> buffer = left.join();
+			buffer.addAll(rightRows);
+			return buffer;
+		}
+	}
+
+	/**
+	 * Minimal support test for the combination of two rows: the combination is dropped if any
+	 * other row's support is contained in the union of both supports, as it is then a
+	 * non-negative combination of minimal-support rows
+	 * @param support union of the supports of both rows
+	 * @param rows all rows of the current matrix
+	 * @param pos first row of the combination
+	 * @param neg second row of the combination
+	 * @return true, if the combination has minimal support
+	 */
+	static boolean isMinimal(long[] support, ArrayList<Row> rows, Row pos, Row neg) {
+		for (Row row : rows) {
+			if (row != pos && row != neg && isSubset(row.support, support)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static long[] union(long[] a, long[] b) {
+		long[] union = new long[a.length];
+		for (int i=0; i<a.length; i++) {
+			union[i] = a[i] | b[i];
+		}
+		return union;
+	}
+
+	static boolean isSubset(long[] a, long[] b) {
+		for (int i=0; i<a.length; i++) {
+			if ((a[i] & ~b[i]) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Combines two rows so that the entry in column col cancels out, then divides by the gcd of all entries
+	 * @param pos row with positive entry in col
+	 * @param neg row with negative entry in col
+	 * @param col column to cancel
+	 * @return new row
+	 */
+	static Row combine(Row pos, Row neg, int col) {
+		if (pos.small != null && neg.small != null) {
+			long a = pos.small[col];
+			long b = -neg.small[col];
+			long g = gcd(a, b);
+			long posFactor = b / g;
+			long negFactor = a / g;
+			long[] row = new long[pos.small.length];
+			try {
+				long rowGcd = 0;
+				for (int i=0; i<row.length; i++) {
+					row[i] = Math.addExact(Math.multiplyExact(posFactor, pos.small[i]), Math.multiplyExact(negFactor, neg.small[i]));
+					rowGcd = gcd(rowGcd, Math.abs(row[i]));
+				}
+				if (rowGcd > 1) {
+					for (int i=0; i<row.length; i++) {
+						row[i] /= rowGcd;
+					}
+				}
+				return new Row(row);
+			}
+			catch (ArithmeticException e) {
+				// Overflow, redo this combination with BigInteger entries
+			}
+		}
+		BigInteger a = pos.get(col);
+		BigInteger b = neg.get(col).negate();
+		BigInteger g = a.gcd(b);
+		BigInteger posFactor = b.divide(g);
+		BigInteger negFactor = a.divide(g);
+		BigInteger[] p = pos.toBig();
+		BigInteger[] n = neg.toBig();
+		BigInteger[] row = new BigInteger[p.length];
+		BigInteger rowGcd = BigInteger.ZERO;
+		for (int i=0; i<row.length; i++) {
+			row[i] = posFactor.multiply(p[i]).add(negFactor.multiply(n[i]));
+			rowGcd = rowGcd.gcd(row[i]);
+		}
+		if (rowGcd.compareTo(BigInteger.ONE) > 0) {
+			for (int i=0; i<row.length; i++) {
+				row[i] = row[i].divide(rowGcd);
+			}
+		}
+		return new Row(row);
+	}
+
+	/**
+	 * Extracts the identity part of all rows whose incidence part is zero
+	 * @param rows final rows
+	 * @return invariants
+	 * @throws ArithmeticException if a coefficient does not fit into long
+	 */
+	ArrayList<long[]> invariants(ArrayList<Row> rows) {
+		ArrayList<long[]> invariants = new ArrayList<long[]>();
+		for (Row row : rows) {
+			boolean isZero = true;
+			for (int c=0; c<colCount && isZero; c++) {
+				isZero = row.signum(c) == 0;
+			}
+			if (isZero) {
+				invariants.add(identityPart(row));
+			}
+		}
+		return invariants;
+	}
+
+	/**
+	 * @param row row with zero incidence part
+	 * @return coefficients of the invariant the row represents
+	 * @throws ArithmeticException if a coefficient does not fit into long
+	 */
+	private long[] identityPart(Row row) {
+		if (row.small == null) {
+			throw new ArithmeticException("Coefficient of invariant exceeds 64 bit");
+		}
+		long[] invariant = new long[rowCount];
+		System.arraycopy(row.small, colCount, invariant, 0, rowCount);
+		return invariant;
+	}
+
+	/**
+	 * Greatest common divisor of two non-negative numbers
+	 */
+	static long gcd(long a, long b) {
+		while (b != 0) {
+			long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+}
@@ -0,0 +1,142 @@
+package org.petri;
+
+import java.util.Arrays;
+
+/**
+ * Sparse incidence matrix of a Petri net in compressed sparse row form, with one
+ * row per transition and one column per place. The entry of transition t and place p
+ * is the net change of tokens on p when t fires, i.e. output weight minus input weight.
+ * Non-zero entries of row r are found at indices rowStart[r] to rowStart[r+1]-1
+ * of col and value, sorted by column. Built in O(|E|) from a CompiledNet, which is
+ * itself compiled in one pass over the edges.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class Incidence {
+
+	protected final int rowCount;
+	protected final int colCount;
+	protected final int[] rowStart;
+	protected final int[] col;
+	protected final int[] value;
+
+	/**
+	 * Constructor, merges input and output arcs of every transition
+	 * @param net compiled Petri net
+	 */
+	public Incidence(CompiledNet net) {
+		this.rowCount = net.transitionCount;
+		this.colCount = net.placeCount;
+		int[] change = new int[colCount];	// Net change per place of the current transition
+		int[] touched = new int[colCount];	// Places with a change, in order of first appearance
+		boolean[] seen = new boolean[colCount];
+		rowStart = new int[rowCount + 1];
+		int[] cols = new int[net.prePlace.length + net.postPlace.length];
+		int[] values = new int[cols.length];
+		int entries = 0;
+		for (int t=0; t<rowCount; t++) {
+			int count = 0;
+			for (int a=net.preStart[t]; a<net.preStart[t + 1]; a++) {
+				int p = net.prePlace[a];
+				if (!seen[p]) {
+					seen[p] = true;
+					touched[count++] = p;
+				}
+				change[p] -= net.preWeight[a];
+			}
+			for (int a=net.postStart[t]; a<net.postStart[t + 1]; a++) {
+				int p = net.postPlace[a];
+				if (!seen[p]) {
+					seen[p] = true;
+					touched[count++] = p;
+				}
+				change[p] += net.postWeight[a];
+			}
+			Arrays.sort(touched, 0, count);
+			for (int i=0; i<count; i++) {
+				int p = touched[i];
+				if (change[p] != 0) {	// Self-loops with equal weights cancel out
+					cols[entries] = p;
+					values[entries++] = change[p];
+				}
+				change[p] = 0;
+				seen[p] = false;
+			}
+			rowStart[t + 1] = entries;
+		}
+		this.col = Arrays.copyOf(cols, entries);
+		this.value = Arrays.copyOf(values, entries);
+	}
+
+	private Incidence(int rowCount, int colCount, int[] rowStart, int[] col, int[] value) {
+		this.rowCount = rowCount;
+		this.colCount = colCount;
+		this.rowStart = rowStart;
+		this.col = col;
+		this.value = value;
+	}
+
+	/**
+	 * Transposes the matrix in O(|E|), e.g. for computing P-invariants
+	 * @return matrix with one row per place and one column per transition
+	 */
+	public Incidence transpose() {
+		int[] start = new int[colCount + 1];
+		for (int i=0; i<col.length; i++) {
+			start[col[i] + 1]++;
+		}
+		for (int c=0; c<colCount; c++) {
+			start[c + 1] += start[c];
+		}
+		int[] fill = start.clone();
+		int[] rows = new int[col.length];
+		int[] values = new int[col.length];
+		for (int r=0; r<rowCount; r++) {	// Rows in ascending order keep the new columns sorted
+			for (int i=rowStart[r]; i<rowStart[r + 1]; i++) {
+				rows[fill[col[i]]] = r;
+				values[fill[col[i]]++] = value[i];
+			}
+		}
+		return new Incidence(colCount, rowCount, start, rows, values);
+	}
+
+	/**
+	 * Extracts a block of the matrix, e.g. one of its Components
+	 * @param rows rows of the block, in ascending order
+	 * @param cols columns of the block, in ascending order, must contain all non-zero columns of the rows
+	 * @return matrix with the given rows and columns, renumbered from 0
+	 */
+	public Incidence block(int[] rows, int[] cols) {
+		int[] index = new int[colCount];	// Column within the block
+		for (int c=0; c<cols.length; c++) {
+			index[cols[c]] = c;
+		}
+		int[] start = new int[rows.length + 1];
+		for (int r=0; r<rows.length; r++) {
+			start[r + 1] = start[r] + rowStart[rows[r] + 1] - rowStart[rows[r]];
+		}
+		int[] blockCol = new int[start[rows.length]];
+		int[] blockValue = new int[blockCol.length];
+		for (int r=0; r<rows.length; r++) {
+			for (int i=rowStart[rows[r]], k=start[r]; i<rowStart[rows[r] + 1]; i++, k++) {
+				blockCol[k] = index[col[i]];	// Ascending columns stay ascending
+				blockValue[k] = value[i];
+			}
+		}
+		return new Incidence(rows.length, cols.length, start, blockCol, blockValue);
+	}
+
+	/**
+	 * @return number of rows, i.e. transitions, or places if transposed
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return number of columns, i.e. places, or transitions if transposed
+	 */
+	public int getColCount() {
+		return colCount;
+	}
+}
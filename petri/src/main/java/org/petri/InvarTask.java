@@ -0,0 +1,455 @@
+package org.petri;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.JComboBox;
+import javax.swing.SwingUtilities;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * Task for computing the minimal T-invariants or P-invariants in the background.
+ * P-invariants are computed by the same engine on the transposed incidence matrix.
+ * Progress is reported per eliminated place together with the current
+ * row count and an estimate of the memory the rows take. The computation
+ * is aborted once it exceeds the row or memory limit. Invariants are
+ * added to the invariant container as soon as they are final, so they
+ * can be inspected while the computation continues.
+ * After structural edits the task updates the last complete result incrementally,
+ * see InvariantBasis. If that fails, it only looks the new net up in the cache and
+ * otherwise clears the invariants, as an edit must never start a full computation.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class InvarTask extends AbstractTask {
+
+	private CyNetwork petriNet;
+	private PetriUtils petriUtils;
+	private CyNetworkViewManager cnvm;
+	private JComboBox<String> invarHolder;
+	private EliminationOrder order;
+	private int parallelism;
+	private long maxRows;
+	private long maxMegabytes;
+	private boolean report;
+	private boolean placeInvariants;
+	private InvariantCache cache;
+	private boolean incremental;
+	private FarkasEngine engine;
+	private volatile FarkasEngine[] engines;	// Engines of the independent blocks
+
+	/**
+	 * Constructor
+	 * @param petriNet Petri net to be analysed
+	 * @param petriUtils Utilities for Petri Net
+	 * @param cnvm Used to refresh the view afterwards
+	 * @param invarHolder Container for invariants
+	 * @param order strategy picking the next place to eliminate
+	 * @param parallelism number of threads combining rows
+	 * @param maxRows largest allowed number of intermediate rows, 0 for no limit
+	 * @param maxMegabytes largest allowed estimated memory of the intermediate rows in MB, 0 for no limit
+	 * @param report show the row counts of every elimination step
+	 * @param placeInvariants compute P-invariants instead of T-invariants
+	 * @param cache cache for the results, null for no caching
+	 * @param incremental update the invariants of the last computation after an edit, if there are any
+	 */
+	public InvarTask(CyNetwork petriNet, PetriUtils petriUtils, CyNetworkViewManager cnvm, JComboBox<String> invarHolder,
+			EliminationOrder order, int parallelism, long maxRows, long maxMegabytes, boolean report,
+			boolean placeInvariants, InvariantCache cache, boolean incremental) {
+		this.petriNet = petriNet;
+		this.petriUtils = petriUtils;
+		this.cnvm = cnvm;
+		this.invarHolder = invarHolder;
+		this.order = order;
+		this.parallelism = parallelism;
+		this.maxRows = maxRows;
+		this.maxMegabytes = maxMegabytes;
+		this.report = report;
+		this.placeInvariants = placeInvariants;
+		this.cache = cache;
+		this.incremental = incremental;
+	}
+
+	/**
+	 * Eliminate all places one after another, handing every invariant to the
+	 * invariant container once it is final, then check for CTI or CPI.
+	 * For P-invariants the roles of places and transitions are swapped.
+	 */
+	public void run(TaskMonitor taskMonitor) throws Exception {
+		String kind = placeInvariants ? "P-invariants" : "T-invariants";
+		taskMonitor.setTitle("Computing minimal " + kind);
+		CyNode[] cyTransitionArray = petriUtils.getTransitions();
+		CyNode[] cyPlaceArray = petriUtils.getPlaces();
+		Incidence incidence = petriUtils.incidence(cyTransitionArray, cyPlaceArray);
+		CyNode[] eliminate = cyPlaceArray;	// Nodes of the columns to eliminate
+		CyNode[] coefficients = cyTransitionArray;	// Nodes of the rows, i.e. the coefficients of the invariants
+		String[] invarNames;	// Names for labelling invariants
+		if (placeInvariants) {
+			incidence = incidence.transpose();
+			eliminate = cyTransitionArray;
+			coefficients = cyPlaceArray;
+			invarNames = petriUtils.names(cyPlaceArray);
+		}
+		else {
+			invarNames = petriUtils.transitionNamesById();
+		}
+		String[] colNames = petriUtils.names(eliminate);
+		// Invariants are handed to invarHolder in batches as soon as they are final
+		ArrayList<Integer[]> invars = new ArrayList<Integer[]>();
+		InvariantBasis previous = placeInvariants ? petriUtils.pInvarBasis : petriUtils.tInvarBasis;
+		if (incremental) {
+			if (previous == null) {	// Nothing to keep up to date
+				return;
+			}
+			engine = new FarkasEngine(incidence.getRowCount(), incidence.getColCount(), order, parallelism);
+			engine.setMaxRows(rowLimit(engine));
+			InvariantBasis basis = previous.update(engine, coefficients, eliminate, incidence);
+			if (basis == previous || cancelled) {
+				return;
+			}
+			clearHolder();
+			if (basis != null) {
+				deliver(basis.getInvariants(), invars, invarNames);
+				store(invars, basis);
+				petriUtils.invarReport = "Updated incrementally after an edit";
+				cache(taskMonitor, incidence, basis.getInvariants());
+				taskMonitor.setStatusMessage("Updated to " + invars.size() + " minimal " + kind);
+				return;
+			}
+			// Not incremental, e.g. most new arcs: only take the invariants from the cache, never eliminate after an edit
+			ArrayList<long[]> cached = cache == null ? null : cache.get(incidence, placeInvariants);
+			if (cached != null) {
+				deliver(cached, invars, invarNames);
+				store(invars, new InvariantBasis(coefficients, eliminate, incidence, cached));
+				petriUtils.invarReport = "Loaded from invariant cache after an edit";
+				taskMonitor.setStatusMessage("Loaded " + invars.size() + " minimal " + kind + " from cache");
+				return;
+			}
+			store(invars, null);
+			petriUtils.invarReport = "Out of date after an edit";
+			taskMonitor.showMessage(TaskMonitor.Level.INFO, "Edit can not be applied incrementally, compute the " + kind + " again");
+			return;
+		}
+		ArrayList<long[]> cached = cache == null ? null : cache.get(incidence, placeInvariants);
+		if (cached != null) {	// Same structure as before, no need to eliminate anything
+			deliver(cached, invars, invarNames);
+			store(invars, new InvariantBasis(coefficients, eliminate, incidence, cached));
+			petriUtils.invarReport = "Loaded from invariant cache";
+			taskMonitor.setStatusMessage("Loaded " + invars.size() + " minimal " + kind + " from cache");
+			finish(taskMonitor, cyPlaceArray);
+			return;
+		}
+		ArrayList<long[]> found = new ArrayList<long[]>();	// All invariants as computed, for the cache
+		Components blocks = Components.of(incidence);
+		String elimination;
+		try {
+			elimination = blocks.getCount() > 1 ? computeBlocks(taskMonitor, incidence, blocks, colNames, invars, invarNames, found)
+					: compute(taskMonitor, incidence, colNames, invars, invarNames, found);
+		}
+		finally {
+			store(invars, null);	// Invariants found so far, even if the computation did not finish
+		}
+		if (elimination == null) {	// Cancelled
+			return;
+		}
+		store(invars, new InvariantBasis(coefficients, eliminate, incidence, found));
+		petriUtils.invarReport = elimination;
+		cache(taskMonitor, incidence, found);
+		taskMonitor.setStatusMessage("Found " + invars.size() + " minimal " + kind);
+		finish(taskMonitor, cyPlaceArray);
+	}
+
+	/**
+	 * Eliminates all columns of the matrix, handing out invariants after every step
+	 * @return elimination report, null if cancelled
+	 * @throws Exception if the row or memory limit is exceeded
+	 */
+	private String compute(TaskMonitor taskMonitor, Incidence incidence, String[] colNames, ArrayList<Integer[]> invars,
+			String[] invarNames, ArrayList<long[]> found) throws Exception {
+		engine = new FarkasEngine(incidence.getRowCount(), incidence.getColCount(), order, parallelism);
+		long limit = rowLimit(engine);
+		engine.setMaxRows(limit);
+		if (report) {
+			taskMonitor.showMessage(TaskMonitor.Level.INFO, "Elimination order: " + engine.describeOrder());
+		}
+		try {
+			engine.start(incidence);
+			deliver(engine.takeConfirmed(), invars, invarNames, found);
+			while (engine.hasNext()) {
+				taskMonitor.setStatusMessage("Eliminating " + (placeInvariants ? "transition " : "place ")
+						+ (engine.getSteps() + 1) + " of " + incidence.getColCount()
+						+ ", " + engine.getRowCount() + " rows (~" + megabytes(engine.getRowCount()) + " MB), "
+						+ invars.size() + " invariants found");
+				int step = engine.getSteps();
+				engine.step();
+				if (engine.getSteps() > step) {	// Step was not cut short by cancelling or the limit
+					taskMonitor.setProgress((double) engine.getSteps() / incidence.getColCount());
+					if (report) {
+						taskMonitor.showMessage(TaskMonitor.Level.INFO, engine.describeStep(step, colNames));
+					}
+					deliver(engine.takeConfirmed(), invars, invarNames, found);
+				}
+			}
+			if (cancelled) {
+				return null;
+			}
+			if (engine.isExceeded()) {
+				throw new Exception("Aborted after " + engine.getSteps() + " of " + incidence.getColCount()
+						+ (placeInvariants ? " transitions" : " places") + ": more than " + limit + " intermediate rows (~" + megabytes(limit) + " MB)");
+			}
+		}
+		finally {
+			engine.shutdown();
+		}
+		return engine.getReport(colNames);
+	}
+
+	/**
+	 * Computes the invariants of every independent block of the matrix on its own and merges
+	 * them, as the invariants of a block matrix are those of its blocks. The blocks are
+	 * spread over the threads, a block without columns is a unit invariant by itself.
+	 * Invariants are handed out as soon as their block is finished.
+	 * @return elimination report of all blocks, null if cancelled
+	 * @throws Exception if a block exceeds the row or memory limit
+	 */
+	private String computeBlocks(TaskMonitor taskMonitor, Incidence incidence, Components blocks, String[] colNames,
+			ArrayList<Integer[]> invars, String[] invarNames, ArrayList<long[]> found) throws Exception {
+		long limit = rowLimit(new FarkasEngine(incidence.getRowCount(), incidence.getColCount()));	// The blocks have shorter rows
+		ArrayList<long[]> units = new ArrayList<long[]>();
+		int nonTrivial = 0;
+		for (int b=0; b<blocks.getCount(); b++) {
+			if (blocks.cols[b].length == 0 && blocks.rows[b].length > 0) {
+				long[] unit = new long[incidence.getRowCount()];
+				unit[blocks.rows[b][0]] = 1;
+				units.add(unit);
+			}
+			else if (blocks.rows[b].length > 0) {
+				nonTrivial++;
+			}
+		}
+		deliver(units, invars, invarNames, found);
+		final FarkasEngine[] blockEngines = new FarkasEngine[nonTrivial];
+		final Incidence[] parts = new Incidence[nonTrivial];
+		final int[] blockOf = new int[nonTrivial];
+		AtomicLong sharedRows = new AtomicLong();	// The limit holds for all blocks running at the same time
+		for (int b=0, k=0; b<blocks.getCount(); b++) {
+			if (blocks.cols[b].length > 0 && blocks.rows[b].length > 0) {
+				blockOf[k] = b;
+				parts[k] = incidence.block(blocks.rows[b], blocks.cols[b]);
+				blockEngines[k] = new FarkasEngine(parts[k].getRowCount(), parts[k].getColCount(), order.copy(),
+						Math.max(1, parallelism / nonTrivial));
+				blockEngines[k].setMaxRows(limit, sharedRows);
+				k++;
+			}
+		}
+		engines = blockEngines;
+		if (cancelled) {	// Cancelled before the engines were known
+			return null;
+		}
+		if (report) {
+			taskMonitor.showMessage(TaskMonitor.Level.INFO, nonTrivial + " independent blocks, elimination order: " + order.describe());
+		}
+		StringBuilder elimination = new StringBuilder(blocks.getCount() + " independent blocks, "
+				+ units.size() + " without columns\n");
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, nonTrivial)));
+		CompletionService<Integer> done = new ExecutorCompletionService<Integer>(pool);
+		try {
+			for (int k=0; k<nonTrivial; k++) {
+				final int block = k;
+				done.submit(new Callable<Integer>() {
+					public Integer call() {
+						FarkasEngine blockEngine = blockEngines[block];
+						blockEngine.start(parts[block]);
+						try {
+							while (blockEngine.hasNext()) {
+								blockEngine.step();
+							}
+						}
+						finally {
+							blockEngine.shutdown();
+						}
+						return block;
+					}
+				});
+			}
+			int exceeded = -1;
+			for (int i=0; i<nonTrivial; i++) {
+				int k;
+				try {
+					k = done.take().get();
+				}
+				catch (ExecutionException e) {
+					throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+				}
+				if (!blockEngines[k].isFinished()) {
+					if (blockEngines[k].isExceeded() && exceeded < 0) {
+						exceeded = k;
+						cancelEngines();	// The result is incomplete anyway
+					}
+					continue;
+				}
+				int[] rows = blocks.rows[blockOf[k]];
+				int[] cols = blocks.cols[blockOf[k]];
+				ArrayList<long[]> merged = new ArrayList<long[]>();
+				for (long[] invariant : blockEngines[k].finish()) {
+					long[] full = new long[incidence.getRowCount()];
+					for (int r=0; r<rows.length; r++) {
+						full[rows[r]] = invariant[r];
+					}
+					merged.add(full);
+				}
+				deliver(merged, invars, invarNames, found);
+				String[] blockNames = new String[cols.length];
+				for (int c=0; c<cols.length; c++) {
+					blockNames[c] = colNames[cols[c]];
+				}
+				String blockReport = "Block with " + rows.length + " rows and " + cols.length + " columns:\n" + blockEngines[k].getReport(blockNames);
+				elimination.append(blockReport);
+				if (report) {
+					taskMonitor.showMessage(TaskMonitor.Level.INFO, blockReport);
+				}
+				taskMonitor.setProgress((double) (i + 1) / nonTrivial);
+				taskMonitor.setStatusMessage((i + 1) + " of " + nonTrivial + " blocks done, " + invars.size() + " invariants found");
+			}
+			if (cancelled) {
+				return null;
+			}
+			if (exceeded > -1) {
+				throw new Exception("Aborted in a block with " + blocks.rows[blockOf[exceeded]].length + " rows and "
+						+ blocks.cols[blockOf[exceeded]].length + " columns: more than " + limit + " intermediate rows in all blocks running");
+			}
+		}
+		finally {
+			cancelEngines();	// Only stops blocks still running after an error
+			pool.shutdown();
+		}
+		return elimination.toString();
+	}
+
+	private void cancelEngines() {
+		FarkasEngine[] blockEngines = engines;
+		if (blockEngines != null) {
+			for (FarkasEngine blockEngine : blockEngines) {
+				blockEngine.cancel();
+			}
+		}
+	}
+
+	/**
+	 * Stores the invariants in petriUtils
+	 * @param invars invariants for display
+	 * @param basis complete result for later updates, null if the computation did not finish
+	 */
+	private void store(ArrayList<Integer[]> invars, InvariantBasis basis) {
+		if (placeInvariants) {
+			petriUtils.pInvars = invars;
+			petriUtils.pInvarBasis = basis;
+		}
+		else {
+			petriUtils.invars = invars;
+			petriUtils.tInvarBasis = basis;
+		}
+	}
+
+	/**
+	 * @param engine engine to be limited
+	 * @return largest number of intermediate rows by the row and memory limit, 0 for no limit
+	 */
+	private long rowLimit(FarkasEngine engine) {
+		long limit = maxRows;
+		if (maxMegabytes > 0) {
+			long rowsInMemory = (maxMegabytes << 20) / engine.bytesPerRow();
+			limit = limit > 0 ? Math.min(limit, rowsInMemory) : rowsInMemory;
+		}
+		return limit;
+	}
+
+	private void cache(TaskMonitor taskMonitor, Incidence incidence, ArrayList<long[]> invariants) {
+		if (cache != null) {
+			try {
+				cache.put(incidence, placeInvariants, invariants);
+			}
+			catch (IOException e) {
+				taskMonitor.showMessage(TaskMonitor.Level.WARN, "Invariants could not be cached: " + e.getMessage());
+			}
+		}
+	}
+
+	private void clearHolder() {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				invarHolder.removeAllItems();
+			}
+		});
+	}
+
+	/**
+	 * Updates the view and checks for CTI or CPI
+	 */
+	private void finish(TaskMonitor taskMonitor, CyNode[] cyPlaceArray) throws Exception {
+		new UpdateViewTask(petriNet, cnvm).run(taskMonitor);
+		if (placeInvariants) {
+			petriUtils.is_CPI(cyPlaceArray);
+		}
+		else {
+			petriUtils.is_CTI();
+		}
+		taskMonitor.setProgress(1.0);
+	}
+
+	/**
+	 * Sorts a batch of new invariants by their sum of coefficients and adds them to invarHolder on the EDT
+	 * @param batch new invariants
+	 * @param invars all invariants so far
+	 * @param invarNames names of the transitions as returned by PetriUtils.transitionNamesById(), or of the places
+	 * @param found all invariants so far as computed, for the cache
+	 */
+	private void deliver(ArrayList<long[]> batch, ArrayList<Integer[]> invars, String[] invarNames, ArrayList<long[]> found) {
+		found.addAll(batch);
+		deliver(batch, invars, invarNames);
+	}
+
+	private void deliver(ArrayList<long[]> batch, ArrayList<Integer[]> invars, String[] invarNames) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		ArrayList<Integer[]> sorted = petriUtils.toInvariants(batch);
+		invars.addAll(sorted);
+		final ArrayList<String> labels = new ArrayList<String>(sorted.size());
+		for (Integer[] invar : sorted) {
+			labels.add(placeInvariants ? PetriUtils.pInvarLabel(invar, invarNames) : PetriUtils.invarLabel(invar, invarNames));
+		}
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				for (String label : labels) {
+					invarHolder.addItem(label);
+				}
+			}
+		});
+	}
+
+	private long megabytes(long rows) {
+		return rows * engine.bytesPerRow() >> 20;
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+		if (engine != null) {
+			engine.cancel();
+		}
+		cancelEngines();
+	}
+}
@@ -0,0 +1,71 @@
+package org.petri;
+
+import javax.swing.JComboBox;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.work.AbstractTaskFactory;
+import org.cytoscape.work.TaskIterator;
+
+/**
+ * Factory for InvarTasks
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class InvarTaskFactory extends AbstractTaskFactory {
+	private final CyNetwork petriNet;
+	private final PetriUtils petriUtils;
+	private final CyNetworkViewManager cnvm;
+	private final JComboBox<String> invarHolder;
+	private final EliminationOrder order;
+	private final int parallelism;
+	private final long maxRows;
+	private final long maxMegabytes;
+	private final boolean report;
+	private final boolean placeInvariants;
+	private final InvariantCache cache;
+
+	/**
+	 * Constructor
+	 * @param petriNet Petri net to be analysed
+	 * @param petriUtils Utilities for Petri Net
+	 * @param cnvm Used to refresh the view afterwards
+	 * @param invarHolder Container for invariants
+	 * @param order strategy picking the next place to eliminate
+	 * @param parallelism number of threads combining rows
+	 * @param maxRows largest allowed number of intermediate rows, 0 for no limit
+	 * @param maxMegabytes largest allowed estimated memory of the intermediate rows in MB, 0 for no limit
+	 * @param report show the row counts of every elimination step
+	 * @param placeInvariants compute P-invariants instead of T-invariants
+	 * @param cache cache for the results, null for no caching
+	 */
+	public InvarTaskFactory(final CyNetwork petriNet, final PetriUtils petriUtils, final CyNetworkViewManager cnvm,
+			JComboBox<String> invarHolder, EliminationOrder order, int parallelism, long maxRows, long maxMegabytes, boolean report,
+			boolean placeInvariants, InvariantCache cache) {
+		this.petriNet = petriNet;
+		this.petriUtils = petriUtils;
+		this.cnvm = cnvm;
+		this.invarHolder = invarHolder;
+		this.order = order;
+		this.parallelism = parallelism;
+		this.maxRows = maxRows;
+		this.maxMegabytes = maxMegabytes;
+		this.report = report;
+		this.placeInvariants = placeInvariants;
+		this.cache = cache;
+	}
+
+	public TaskIterator createTaskIterator(){
+		return new TaskIterator(new InvarTask(petriNet, petriUtils, cnvm, invarHolder, order, parallelism, maxRows, maxMegabytes, report,
+				placeInvariants, cache, false));
+	}
+
+	/**
+	 * Creates a task updating the invariants after a structural edit, with the settings of this factory
+	 * @return TaskIterator
+	 */
+	public TaskIterator createUpdateTaskIterator(){
+		return new TaskIterator(new InvarTask(petriNet, petriUtils, cnvm, invarHolder, order, parallelism, maxRows, maxMegabytes, report,
+				placeInvariants, cache, true));
+	}
+}
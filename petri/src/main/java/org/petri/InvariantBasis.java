@@ -0,0 +1,170 @@
+package org.petri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.cytoscape.model.CyNode;
+
+/**
+ * Complete set of minimal invariants of an incidence matrix, kept together with the
+ * nodes of its rows and columns, so it can be updated after structural edits instead
+ * of being computed from scratch. Rows are the nodes the invariants are made of, e.g.
+ * transitions for T-invariants, columns are the nodes giving the constraints.
+ * An edit may add rows and columns and change columns. The minimal invariants of the
+ * old matrix, extended by zeros, together with the unit vectors of the new rows are the
+ * minimal invariants of the old constraints. Starting from these, the FarkasEngine only
+ * has to eliminate the new and the changed columns. Where a column changed, its old
+ * constraint is still imposed on the result; this is harmless only if the old column is a
+ * linear combination of the new columns, which is checked with Bareiss elimination.
+ * E.g. an arc between t and p that is covered by a real invariant of the new net fails the
+ * check, and so does almost every new arc, so arc edits are rarely incremental. Removed
+ * nodes and failed checks require a full computation.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class InvariantBasis {
+
+	private final CyNode[] rowNodes;
+	private final CyNode[] colNodes;
+	private final Incidence incidence;
+	private final ArrayList<long[]> invariants;
+
+	/**
+	 * Constructor
+	 * @param rowNodes nodes of the rows of the incidence matrix
+	 * @param colNodes nodes of the columns of the incidence matrix
+	 * @param incidence sparse incidence matrix
+	 * @param invariants all minimal invariants of the matrix, as long[] of length of rowNodes
+	 */
+	public InvariantBasis(CyNode[] rowNodes, CyNode[] colNodes, Incidence incidence, ArrayList<long[]> invariants) {
+		this.rowNodes = rowNodes;
+		this.colNodes = colNodes;
+		this.incidence = incidence;
+		this.invariants = invariants;
+	}
+
+	/**
+	 * @return minimal invariants, as long[] of length of rowNodes
+	 */
+	public ArrayList<long[]> getInvariants() {
+		return invariants;
+	}
+
+	/**
+	 * Computes the minimal invariants of the edited matrix from this basis
+	 * @param engine engine with as many rows and columns as the new matrix, may be cancelled meanwhile
+	 * @param newRowNodes nodes of the rows of the new incidence matrix
+	 * @param newColNodes nodes of the columns of the new incidence matrix
+	 * @param newIncidence new sparse incidence matrix
+	 * @return basis of the new matrix, this if nothing changed, null if it has to be computed from scratch
+	 */
+	public InvariantBasis update(FarkasEngine engine, CyNode[] newRowNodes, CyNode[] newColNodes, Incidence newIncidence) {
+		int[] rowMap = map(rowNodes, newRowNodes);	// New index of every old row
+		int[] colMap = map(colNodes, newColNodes);
+		if (rowMap == null || colMap == null) {	// Nodes were removed
+			return null;
+		}
+		// Compare every column of the new matrix with the old column, extended by zeros
+		Incidence oldColumns = incidence.transpose();
+		Incidence newColumns = newIncidence.transpose();
+		boolean[] satisfied = new boolean[newColNodes.length];
+		boolean[] isOld = new boolean[newColNodes.length];
+		ArrayList<long[]> changed = new ArrayList<long[]>();	// Old columns that differ, in new row order
+		for (int c=0; c<colNodes.length; c++) {
+			long[] old = new long[newRowNodes.length];
+			for (int i=oldColumns.rowStart[c]; i<oldColumns.rowStart[c + 1]; i++) {
+				old[rowMap[oldColumns.col[i]]] = oldColumns.value[i];
+			}
+			isOld[colMap[c]] = true;
+			satisfied[colMap[c]] = Arrays.equals(old, column(newColumns, colMap[c]));
+			if (!satisfied[colMap[c]]) {
+				changed.add(old);
+			}
+		}
+		boolean edited = !changed.isEmpty() || newRowNodes.length > rowNodes.length;
+		for (int c=0; c<newColNodes.length; c++) {
+			if (!isOld[c]) {
+				edited |= newColumns.rowStart[c + 1] > newColumns.rowStart[c];
+				satisfied[c] = newColumns.rowStart[c + 1] == newColumns.rowStart[c];	// New columns without entries constrain nothing
+			}
+		}
+		if (!edited) {
+			return this;
+		}
+		if (!changed.isEmpty()) {
+			BareissRank rank = new BareissRank(newRowNodes.length);
+			for (int c=0; c<newColNodes.length; c++) {
+				rank.add(column(newColumns, c));
+			}
+			for (long[] old : changed) {
+				if (rank.add(old)) {	// Old constraint is not implied by the new ones
+					return null;
+				}
+			}
+		}
+		// Minimal invariants of the old constraints: old invariants and the unit vectors of new rows
+		ArrayList<long[]> seeds = new ArrayList<long[]>(invariants.size() + newRowNodes.length - rowNodes.length);
+		for (long[] invariant : invariants) {
+			long[] seed = new long[newRowNodes.length];
+			for (int r=0; r<rowNodes.length; r++) {
+				seed[rowMap[r]] = invariant[r];
+			}
+			seeds.add(seed);
+		}
+		boolean[] isOldRow = new boolean[newRowNodes.length];
+		for (int r=0; r<rowNodes.length; r++) {
+			isOldRow[rowMap[r]] = true;
+		}
+		for (int r=0; r<newRowNodes.length; r++) {
+			if (!isOldRow[r]) {
+				long[] seed = new long[newRowNodes.length];
+				seed[r] = 1;
+				seeds.add(seed);
+			}
+		}
+		engine.start(newIncidence, seeds, satisfied);
+		try {
+			while (engine.hasNext()) {
+				engine.step();
+			}
+		}
+		finally {
+			engine.shutdown();
+		}
+		if (!engine.isFinished()) {	// Cancelled or exceeded the row limit
+			return null;
+		}
+		return new InvariantBasis(newRowNodes, newColNodes, newIncidence, engine.finish());
+	}
+
+	/**
+	 * @return index of every old node among the new nodes, null if an old node is missing
+	 */
+	private static int[] map(CyNode[] oldNodes, CyNode[] newNodes) {
+		HashMap<CyNode, Integer> index = new HashMap<CyNode, Integer>();
+		for (int i=0; i<newNodes.length; i++) {
+			index.put(newNodes[i], i);
+		}
+		int[] map = new int[oldNodes.length];
+		for (int i=0; i<oldNodes.length; i++) {
+			Integer n = index.get(oldNodes[i]);
+			if (n == null) {
+				return null;
+			}
+			map[i] = n;
+		}
+		return map;
+	}
+
+	/**
+	 * @return row r of a sparse matrix as dense vector, used on the transposed matrix to get column r
+	 */
+	private static long[] column(Incidence columns, int r) {
+		long[] column = new long[columns.colCount];
+		for (int i=columns.rowStart[r]; i<columns.rowStart[r + 1]; i++) {
+			column[columns.col[i]] = columns.value[i];
+		}
+		return column;
+	}
+}
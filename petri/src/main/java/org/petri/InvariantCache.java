@@ -0,0 +1,274 @@
+package org.petri;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Persistent cache of computed invariants. Invariants only depend on the structure and
+ * the weights of a net, so they are keyed by a SHA-256 hash of the sparse incidence matrix,
+ * which is canonical for a given order of places and transitions: columns are sorted and
+ * zero entries left out. Edits of tokens or names therefore hit the cache.
+ * Every entry is a file in the cache directory (big endian):
+ * 	- magic "PICI", version, kind (0 for T-, 1 for P-invariants)
+ * 	- the incidence matrix: rows, columns, non-zero entries, rowStart[], col[], value[],
+ * 	  compared on reading, so hash collisions can not return wrong invariants
+ * 	- number of invariants, per invariant the number of non-zero coefficients
+ * 	  followed by pairs of (index, coefficient as long)
+ * The last-modified time of a file is its last use. Once the directory exceeds its size,
+ * the least recently used entries are deleted.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class InvariantCache {
+
+	static final int MAGIC = 0x50494349;	// "PICI"
+	static final int VERSION = 1;
+	static final String SUFFIX = ".inv";
+	private final File directory;
+	private final long maxBytes;
+
+	/**
+	 * Constructor
+	 * @param directory directory holding the entries, created if necessary
+	 * @param maxBytes largest total size of all entries
+	 */
+	public InvariantCache(File directory, long maxBytes) {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Creates the cache next to the current Cytoscape session, i.e. in the directory
+	 * "NAME.pic-invariants" beside "NAME.cys". Without a saved session the cache
+	 * is kept in the Cytoscape configuration directory of the user.
+	 * @param sessionFileName file name of the current session, may be null
+	 * @param maxBytes largest total size of all entries
+	 * @return cache
+	 */
+	public static InvariantCache forSession(String sessionFileName, long maxBytes) {
+		File directory;
+		if (sessionFileName != null && !sessionFileName.isEmpty()) {
+			File session = new File(sessionFileName);
+			String name = session.getName();
+			if (name.lastIndexOf('.') > 0) {
+				name = name.substring(0, name.lastIndexOf('.'));
+			}
+			directory = new File(session.getAbsoluteFile().getParentFile(), name + ".pic-invariants");
+		}
+		else {
+			directory = new File(new File(System.getProperty("user.home"), "CytoscapeConfiguration"), "pic-invariants");
+		}
+		return new InvariantCache(directory, maxBytes);
+	}
+
+	/**
+	 * Hashes the kind of invariants and the incidence matrix
+	 * @param incidence sparse incidence matrix the invariants are computed of
+	 * @param placeInvariants P-invariants (true) or T-invariants (false)
+	 * @return hash as hex string, used as file name
+	 */
+	public static String key(Incidence incidence, boolean placeInvariants) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);	// Every Java platform has to support SHA-256
+		}
+		update(digest, placeInvariants ? 1 : 0);
+		update(digest, incidence.rowCount);
+		update(digest, incidence.colCount);
+		for (int[] array : new int[][] {incidence.rowStart, incidence.col, incidence.value}) {
+			update(digest, array.length);
+			for (int v : array) {
+				update(digest, v);
+			}
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	private static void update(MessageDigest digest, int v) {
+		digest.update((byte) (v >>> 24));
+		digest.update((byte) (v >>> 16));
+		digest.update((byte) (v >>> 8));
+		digest.update((byte) v);
+	}
+
+	/**
+	 * Looks up the invariants of a matrix
+	 * @param incidence sparse incidence matrix
+	 * @param placeInvariants P-invariants (true) or T-invariants (false)
+	 * @return invariants, null if not cached or the entry is unreadable
+	 */
+	public ArrayList<long[]> get(Incidence incidence, boolean placeInvariants) {
+		File entry = new File(directory, key(incidence, placeInvariants) + SUFFIX);
+		if (!entry.isFile()) {
+			return null;
+		}
+		ArrayList<long[]> invariants = new ArrayList<long[]>();
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != (placeInvariants ? 1 : 0)
+					|| in.readInt() != incidence.rowCount || in.readInt() != incidence.colCount
+					|| !Arrays.equals(readArray(in), incidence.rowStart) || !Arrays.equals(readArray(in), incidence.col)
+					|| !Arrays.equals(readArray(in), incidence.value)) {
+				return null;
+			}
+			int count = in.readInt();
+			for (int i=0; i<count; i++) {
+				long[] invariant = new long[incidence.rowCount];
+				int nonZero = in.readInt();
+				for (int k=0; k<nonZero; k++) {
+					int index = in.readInt();
+					if (index < 0 || index >= invariant.length) {
+						throw new IOException("Invalid coefficient index");
+					}
+					invariant[index] = in.readLong();
+				}
+				invariants.add(invariant);
+			}
+		}
+		catch (IOException e) {
+			return null;	// Treat broken entries as missing, they are overwritten by the next put()
+		}
+		finally {
+			close(in);
+		}
+		entry.setLastModified(System.currentTimeMillis());
+		return invariants;
+	}
+
+	/**
+	 * Stores the invariants of a matrix, then evicts least recently used entries if the cache is too large
+	 * @param incidence sparse incidence matrix
+	 * @param placeInvariants P-invariants (true) or T-invariants (false)
+	 * @param invariants complete set of invariants
+	 * @throws IOException if the entry can not be written
+	 */
+	public void put(Incidence incidence, boolean placeInvariants, ArrayList<long[]> invariants) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Can not create invariant cache " + directory);
+		}
+		String key = key(incidence, placeInvariants);
+		File temp = new File(directory, key + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(placeInvariants ? 1 : 0);
+			out.writeInt(incidence.rowCount);
+			out.writeInt(incidence.colCount);
+			writeArray(out, incidence.rowStart);
+			writeArray(out, incidence.col);
+			writeArray(out, incidence.value);
+			out.writeInt(invariants.size());
+			for (long[] invariant : invariants) {
+				int nonZero = 0;
+				for (long v : invariant) {
+					if (v != 0) {
+						nonZero++;
+					}
+				}
+				out.writeInt(nonZero);
+				for (int index=0; index<invariant.length; index++) {
+					if (invariant[index] != 0) {
+						out.writeInt(index);
+						out.writeLong(invariant[index]);
+					}
+				}
+			}
+		}
+		finally {
+			out.close();
+		}
+		File entry = new File(directory, key + SUFFIX);
+		entry.delete();
+		if (!temp.renameTo(entry)) {
+			temp.delete();
+			throw new IOException("Can not write invariant cache entry " + entry);
+		}
+		evict();
+	}
+
+	/**
+	 * Deletes the least recently used entries until the cache fits into its size
+	 */
+	private void evict() {
+		File[] entries = directory.listFiles();
+		if (entries == null) {
+			return;
+		}
+		long size = 0;
+		ArrayList<File> files = new ArrayList<File>();
+		for (File f : entries) {
+			if (f.getName().endsWith(SUFFIX)) {
+				files.add(f);
+				size += f.length();
+			}
+		}
+		if (size <= maxBytes) {
+			return;
+		}
+		Collections.sort(files, new Comparator<File>() {	// Least recently used first
+			public int compare(File a, File b) {
+				return Long.compare(a.lastModified(), b.lastModified());
+			}
+		});
+		for (File f : files) {
+			if (size <= maxBytes) {
+				break;
+			}
+			long length = f.length();
+			if (f.delete()) {
+				size -= length;
+			}
+		}
+	}
+
+	private static int[] readArray(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			throw new IOException("Invalid array length");
+		}
+		int[] array = new int[length];
+		for (int i=0; i<length; i++) {
+			array[i] = in.readInt();
+		}
+		return array;
+	}
+
+	private static void writeArray(DataOutputStream out, int[] array) throws IOException {
+		out.writeInt(array.length);
+		for (int v : array) {
+			out.writeInt(v);
+		}
+	}
+
+	private static void close(DataInputStream in) {
+		if (in != null) {
+			try {
+				in.close();
+			}
+			catch (IOException e) {
+				// Nothing left to read
+			}
+		}
+	}
+}
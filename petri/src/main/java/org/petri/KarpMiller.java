@@ -0,0 +1,214 @@
+package org.petri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Karp-Miller coverability tree of a Petri net, built breadth-first from a marking.
+ * Markings may hold OMEGA tokens on a place, standing for arbitrarily many. A new marking
+ * that is larger than one of its ancestors gets OMEGA on every place where it is larger,
+ * as repeating the path from that ancestor pumps up these places. The tree is pruned:
+ * a new marking is not added if it equals a marking of the tree, found by a hash index,
+ * or is covered by one of the markings with OMEGA places, which are few and compared one
+ * by one. Every reachable marking is still covered by a marking of the tree, so a place is
+ * unbounded exactly if it holds OMEGA in some marking, otherwise its bound is the largest
+ * number of tokens it holds. Only markings and their parents are stored, in a MarkingStore
+ * and in pages of longs. The tree is built in batches by expand(), so it can be cancelled
+ * in between, and stops growing at a budget of markings.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class KarpMiller {
+
+	public static final int OMEGA = Integer.MAX_VALUE;
+
+	private final CompiledNet net;
+	private final int budget;
+	private final MarkingStore markings;
+	private final MarkingStore.Pages parent = new MarkingStore.Pages();	// Parent of every marking, -1 for the root
+	private final ArrayList<int[]> omegaMarkings = new ArrayList<int[]>();	// Markings with OMEGA places
+	private final int[] bound;	// Largest number of tokens on every place, OMEGA if unbounded
+	private int expanded;	// Markings expanded so far
+	private long pruned;	// Successors equal to or covered by a marking of the tree
+	private boolean truncated;	// A marking was dropped because of the budget
+
+	/**
+	 * Constructor
+	 * @param net compiled Petri net
+	 * @param initial initial marking
+	 * @param budget maximal number of markings, at least 1
+	 */
+	public KarpMiller(CompiledNet net, int[] initial, int budget) {
+		this.net = net;
+		this.budget = budget;
+		this.markings = new MarkingStore(net.placeCount);
+		this.bound = initial.clone();
+		markings.add(initial);
+		parent.set(0, -1);
+	}
+
+	/**
+	 * Expands markings in breadth-first order. Once the budget is reached, new markings are
+	 * dropped and the expansion ends with the current marking.
+	 * @param count maximal number of markings to expand
+	 * @return true, if markings remain to be expanded
+	 */
+	public boolean expand(int count) {
+		int[] m = new int[net.placeCount];
+		int[] next = new int[net.placeCount];
+		int[] ancestor = new int[net.placeCount];
+		for (int i=0; i<count && hasNext(); i++) {
+			markings.get(expanded, m);
+			for (int t=0; t<net.transitionCount; t++) {
+				if (!net.isEnabled(t, m)) {	// OMEGA enables every arc
+					continue;
+				}
+				fire(t, m, next);
+				accelerate(expanded, next, ancestor);
+				if (markings.find(next) >= 0 || isCovered(next)) {
+					pruned++;
+					continue;
+				}
+				if (markings.size() == budget) {
+					truncated = true;
+					continue;
+				}
+				parent.set(markings.add(next), expanded);
+				boolean omega = false;
+				for (int p=0; p<next.length; p++) {
+					bound[p] = Math.max(bound[p], next[p]);
+					omega |= next[p] == OMEGA;
+				}
+				if (omega) {
+					omegaMarkings.add(next.clone());
+				}
+			}
+			expanded++;
+		}
+		return hasNext();
+	}
+
+	/**
+	 * Fires a transition, OMEGA places stay OMEGA
+	 * @param t index of transition
+	 * @param m marking enabling t
+	 * @param next receives the resulting marking
+	 */
+	private void fire(int t, int[] m, int[] next) {
+		System.arraycopy(m, 0, next, 0, m.length);
+		for (int a=net.preStart[t]; a<net.preStart[t + 1]; a++) {
+			if (next[net.prePlace[a]] != OMEGA) {
+				next[net.prePlace[a]] -= net.preWeight[a];
+			}
+		}
+		for (int a=net.postStart[t]; a<net.postStart[t + 1]; a++) {
+			int p = net.postPlace[a];
+			if (next[p] != OMEGA) {
+				if ((long) next[p] + net.postWeight[a] >= OMEGA) {
+					throw new IllegalStateException("More than " + (OMEGA - 1) + " tokens on a place");
+				}
+				next[p] += net.postWeight[a];
+			}
+		}
+	}
+
+	/**
+	 * Sets every place to OMEGA where the marking exceeds an ancestor it covers
+	 * @param id parent of the marking
+	 * @param next new marking, changed in place
+	 * @param ancestor scratch space for the markings of the ancestors
+	 */
+	private void accelerate(int id, int[] next, int[] ancestor) {
+		for (int a=id; a>=0; a=(int) parent.get(a)) {
+			markings.get(a, ancestor);
+			if (covers(next, ancestor)) {
+				for (int p=0; p<next.length; p++) {
+					if (ancestor[p] < next[p]) {
+						next[p] = OMEGA;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true, if a marking with OMEGA places covers the given one
+	 */
+	private boolean isCovered(int[] m) {
+		for (int[] omega : omegaMarkings) {
+			if (covers(omega, m)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true, if every place holds at least as many tokens in m as in n
+	 */
+	private static boolean covers(int[] m, int[] n) {
+		for (int p=0; p<m.length; p++) {
+			if (m[p] < n[p]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true, if markings remain to be expanded and the budget was not exceeded
+	 */
+	public boolean hasNext() {
+		return expanded < markings.size() && !truncated;
+	}
+
+	/**
+	 * @return true, if all markings were expanded, i.e. the bounds are exact
+	 */
+	public boolean isComplete() {
+		return expanded == markings.size() && !truncated;
+	}
+
+	/**
+	 * @return true, if the budget stopped the expansion
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * @return number of markings of the tree
+	 */
+	public int getNodeCount() {
+		return markings.size();
+	}
+
+	/**
+	 * @return number of successors left out because the tree already covers them
+	 */
+	public long getPruned() {
+		return pruned;
+	}
+
+	/**
+	 * @return largest number of tokens on every place, OMEGA for unbounded places.
+	 * If the tree is incomplete, OMEGA places are unbounded, the others at least as large.
+	 */
+	public int[] getBounds() {
+		return bound.clone();
+	}
+
+	/**
+	 * @return places holding OMEGA in some marking, i.e. unbounded places
+	 */
+	public int[] getUnboundedPlaces() {
+		int count = 0;
+		int[] unbounded = new int[bound.length];
+		for (int p=0; p<bound.length; p++) {
+			if (bound[p] == OMEGA) {
+				unbounded[count++] = p;
+			}
+		}
+		return Arrays.copyOf(unbounded, count);
+	}
+}
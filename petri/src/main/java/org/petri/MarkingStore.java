@@ -0,0 +1,265 @@
+package org.petri;
+
+import java.util.Arrays;
+
+/**
+ * Compact set of markings, numbering them in the order they are added. Every marking is
+ * encoded with a variable length of 7 bits per byte, so a place with less than 128
+ * tokens takes one byte, and appended to an arena of long[] pages. An open-addressing
+ * hash table with linear probing keeps the hash and the number of every marking in one
+ * long, so most probes do not touch the arena. A marking of n places mostly small takes
+ * about n + 24 bytes, i.e. tens of millions of markings fit in a few GB.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class MarkingStore {
+
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	private final Pages arena = new Pages();	// Encoded markings, 8 bytes per long
+	private final Pages offset = new Pages();	// Byte offset of every marking in the arena
+	private long[] table;	// Hash in the upper, number + 1 in the lower 32 bits, 0 if empty
+	private int size;
+	private long used;	// Bytes used in the arena
+	private final byte[] scratch;	// Encoding of the marking looked up last
+
+	/**
+	 * Growable long[] of up to 2^31 pages of 2^20 longs, not copied when growing
+	 */
+	static final class Pages {
+		private static final int PAGE_BITS = 20;
+		private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+		private long[][] pages;
+
+		Pages() {
+			pages = new long[16][];
+		}
+
+		/**
+		 * Constructor for pages read by other threads, which must never see the page array grow
+		 * @param maxPages number of pages allocated up front
+		 */
+		Pages(int maxPages) {
+			pages = new long[maxPages][];
+		}
+
+		long get(long i) {
+			return pages[(int) (i >>> PAGE_BITS)][(int) i & PAGE_MASK];
+		}
+
+		void set(long i, long value) {
+			int page = (int) (i >>> PAGE_BITS);
+			if (page >= pages.length) {	// Not for pages read by other threads
+				pages = Arrays.copyOf(pages, Math.max(page + 1, pages.length * 2));
+			}
+			if (pages[page] == null) {
+				pages[page] = new long[1 << PAGE_BITS];
+			}
+			pages[page][(int) i & PAGE_MASK] = value;
+		}
+
+		int getByte(long b) {
+			return (int) (get(b >>> 3) >>> ((b & 7) << 3)) & 0xFF;
+		}
+
+		/**
+		 * Stores a byte, the long holding it must not have been written beyond this byte yet
+		 */
+		void appendByte(long b, int value) {
+			long word = (b & 7) == 0 ? 0 : get(b >>> 3);
+			set(b >>> 3, word | (long) (value & 0xFF) << ((b & 7) << 3));
+		}
+
+		/**
+		 * @return bytes allocated
+		 */
+		long bytes() {
+			long bytes = 0;
+			for (long[] page : pages) {
+				if (page != null) {
+					bytes += (long) page.length << 3;
+				}
+			}
+			return bytes;
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param placeCount number of places of every marking
+	 */
+	public MarkingStore(int placeCount) {
+		this.table = new long[1 << 10];
+		this.scratch = new byte[placeCount * 5];
+	}
+
+	/**
+	 * Adds a marking, unless it is already contained
+	 * @param marking marking to add, no place may hold a negative number of tokens
+	 * @return number of the marking, equal to the size before if it was new
+	 */
+	public int add(int[] marking) {
+		int length = encode(marking, scratch);
+		int hash = hash(scratch, length);
+		int slot = lookup(hash, length);
+		if (table[slot] != 0) {
+			return (int) table[slot] - 1;
+		}
+		if (size == MAX_CAPACITY / 2) {
+			throw new IllegalStateException("More than " + MAX_CAPACITY / 2 + " markings");
+		}
+		int id = size++;
+		offset.set(id, used);
+		for (int b=0; b<length; b++) {
+			arena.appendByte(used++, scratch[b]);
+		}
+		table[slot] = (long) hash << 32 | (id + 1L);
+		if (size > table.length / 2) {	// Keep probe sequences short
+			grow();
+		}
+		return id;
+	}
+
+	/**
+	 * Looks up a marking without adding it
+	 * @param marking marking to look up
+	 * @return number of the marking, -1 if it is not contained
+	 */
+	public int find(int[] marking) {
+		int length = encode(marking, scratch);
+		int slot = lookup(hash(scratch, length), length);
+		return (int) table[slot] - 1;
+	}
+
+	/**
+	 * Probes the hash table for the encoding in scratch
+	 * @return slot of the marking, or the empty slot where it belongs
+	 */
+	private int lookup(int hash, int length) {
+		int mask = table.length - 1;
+		int slot = hash & mask;
+		while (table[slot] != 0) {
+			if ((int) (table[slot] >>> 32) == hash && matches((int) table[slot] - 1, length)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Decodes a marking
+	 * @param id number of the marking
+	 * @param marking receives the tokens of every place
+	 */
+	public void get(int id, int[] marking) {
+		decode(arena, offset.get(id), marking);
+	}
+
+	/**
+	 * Decodes a marking, see encode()
+	 * @param arena pages holding the encoding
+	 * @param b byte offset of the encoding
+	 * @param marking receives the tokens of every place
+	 */
+	static void decode(Pages arena, long b, int[] marking) {
+		for (int p=0; p<marking.length; p++) {
+			int value = 0;
+			int shift = 0;
+			int next;
+			do {
+				next = arena.getByte(b++);
+				value |= (next & 0x7F) << shift;
+				shift += 7;
+			} while ((next & 0x80) != 0);
+			marking[p] = value;
+		}
+	}
+
+	/**
+	 * @return number of markings
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return bytes allocated for the arena, the offsets and the hash table
+	 */
+	public long bytes() {
+		return arena.bytes() + offset.bytes() + ((long) table.length << 3);
+	}
+
+	/**
+	 * Encodes a marking with 7 bits per byte, the highest bit set on all but the last byte
+	 * of every place. The encoding of a whole marking is never a prefix of another one.
+	 * @param marking marking to encode
+	 * @param scratch receives the encoding, at least 5 bytes per place
+	 * @return length of the encoding
+	 */
+	static int encode(int[] marking, byte[] scratch) {
+		int length = 0;
+		for (int p=0; p<marking.length; p++) {
+			int value = marking[p];
+			if (value < 0) {
+				throw new IllegalArgumentException("Negative or more than " + Integer.MAX_VALUE + " tokens");
+			}
+			while (value >= 0x80) {
+				scratch[length++] = (byte) (value | 0x80);
+				value >>>= 7;
+			}
+			scratch[length++] = (byte) value;
+		}
+		return length;
+	}
+
+	/**
+	 * @return hash of an encoding
+	 */
+	static int hash(byte[] scratch, int length) {
+		long h = 0x9E3779B97F4A7C15L;
+		for (int b=0; b<length; b++) {
+			h = (h ^ (scratch[b] & 0xFF)) * 0xBF58476D1CE4E5B9L;
+		}
+		h ^= h >>> 33;	// Finalizer of MurmurHash3, spreads every byte over the low bits used for slots
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+
+	/**
+	 * @return true, if the stored marking is encoded like scratch
+	 */
+	private boolean matches(int id, int length) {
+		long b = offset.get(id);
+		if (id + 1 < size ? offset.get(id + 1) - b != length : used - b != length) {
+			return false;
+		}
+		for (int i=0; i<length; i++) {
+			if (arena.getByte(b + i) != (scratch[i] & 0xFF)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Doubles the hash table, using the stored hashes
+	 */
+	private void grow() {
+		long[] old = table;
+		table = new long[old.length * 2];
+		int mask = table.length - 1;
+		for (long entry : old) {
+			if (entry != 0) {
+				int slot = (int) (entry >>> 32) & mask;
+				while (table[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = entry;
+			}
+		}
+	}
+}
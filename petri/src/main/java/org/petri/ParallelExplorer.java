@@ -0,0 +1,455 @@
+package org.petri;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Multi-threaded breadth-first exploration of the reachable markings of a Petri net,
+ * counting markings, edges, deadlocks and the transitions never enabled, like the
+ * ReachabilityGraph but without storing edges. Every level of the search is split
+ * recursively over a fork-join pool, whose idle threads steal the halves of others.
+ * Every thread owns a worker with its own arena of encoded markings and its own queue
+ * of markings for the next level, so only the visited set is shared. The visited set is
+ * an open-addressing hash table of longs, claimed by compare-and-set and never changed
+ * afterwards, so lookups need no locks. An entry holds 16 bits of the hash, the worker
+ * and the number of the marking within that worker's arena. A worker writes a marking
+ * to its arena before it publishes the entry, and every marking starts on a new long,
+ * so no other thread ever sees a long of the arena change. The table can not grow while
+ * threads insert, so it is grown between levels, to twice the markings the next level
+ * may reach: every marking adds at most one per transition, and every thread at most
+ * one beyond the budget, as markings are only counted once they are published.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class ParallelExplorer {
+
+	static final int LEAF_SIZE = 256;	// Markings per fork-join leaf
+	private static final int MAX_WORKERS = 1 << 16;
+	private static final int MIN_CAPACITY = 1 << 10;
+	private static final int MAX_PAGES = 1 << 14;	// Pages of a worker's arena, i.e. up to 128 GB each
+	static final int MAX_BUDGET = (1 << 29) - MAX_WORKERS;	// Keeps the table within 2^30 entries
+
+	private final CompiledNet net;
+	private final int budget;
+	private AtomicLongArray table;	// Hash, worker and number + 1 of every marking, 0 if empty, replaced only between levels
+	private int mask;
+	private final AtomicInteger stateCount = new AtomicInteger();
+	private final Worker[] workers = new Worker[MAX_WORKERS];
+	private final AtomicInteger workerCount = new AtomicInteger();
+	private final ConcurrentHashMap<Thread, Worker> byThread = new ConcurrentHashMap<Thread, Worker>();	// Not thread-local, which would outlive the explorer in pooled threads
+	private long[] frontier;	// Markings of the current level, as worker << 32 | number
+	private int depth;
+	private long nanos;	// Time spent exploring
+	private volatile boolean truncated;	// A marking was dropped because of the budget
+	private volatile boolean cancelled;
+
+	/**
+	 * Markings owned by one thread and its share of the results
+	 */
+	private final class Worker {
+		final int index;
+		final MarkingStore.Pages arena = new MarkingStore.Pages(MAX_PAGES);
+		final MarkingStore.Pages offset = new MarkingStore.Pages(MAX_PAGES);
+		long used;	// Bytes used in the arena, always a multiple of 8
+		int size;	// Markings in the arena
+		final byte[] scratch = new byte[net.placeCount * 5];
+		final long[] words = new long[(net.placeCount * 5 + 7) >>> 3];	// Encoding in scratch as longs, padded with zeros
+		final int[] m = new int[net.placeCount];
+		final int[] next = new int[net.placeCount];
+		long[] queue = new long[64];	// Markings found for the next level
+		int queued;
+		long expanded;
+		long edges;
+		final boolean[] enabled = new boolean[net.transitionCount];
+		long[] deadlocks = new long[16];
+		int deadlockCount;
+
+		Worker(int index) {
+			this.index = index;
+		}
+
+		/**
+		 * Fires every enabled transition of a marking, queueing the new successors
+		 */
+		void expand(long id) {
+			decode(id, m);
+			expanded++;
+			boolean dead = true;
+			for (int t=0; t<net.transitionCount; t++) {
+				if (!net.isEnabled(t, m)) {
+					continue;
+				}
+				dead = false;
+				enabled[t] = true;
+				System.arraycopy(m, 0, next, 0, m.length);
+				net.consume(t, next);
+				net.produce(t, next);
+				int before = size;
+				long target = insert(this, next);
+				if (target < 0) {
+					continue;
+				}
+				edges++;
+				if (size > before) {
+					if (queued == queue.length) {
+						queue = Arrays.copyOf(queue, queued * 2);
+					}
+					queue[queued++] = target;
+				}
+			}
+			if (dead) {
+				if (deadlockCount == deadlocks.length) {
+					deadlocks = Arrays.copyOf(deadlocks, deadlockCount * 2);
+				}
+				deadlocks[deadlockCount++] = id;
+			}
+		}
+	}
+
+	/**
+	 * Expands the markings [from, to) of the frontier, splitting the range in halves until it is small enough
+	 */
+	private class LevelTask extends RecursiveAction {
+		private static final long serialVersionUID = -3381260870384151926L;
+		private final int from;
+		private final int to;
+
+		LevelTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from <= LEAF_SIZE) {
+				Worker w = worker();
+				for (int i=from; i<to && !cancelled; i++) {
+					w.expand(frontier[i]);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			LevelTask left = new LevelTask(from, mid);
+			left.fork();
+			new LevelTask(mid, to).compute();
+			left.join();
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param net compiled Petri net
+	 * @param initial initial marking
+	 * @param budget maximal number of markings, a few more may be found by threads running at the same time
+	 */
+	public ParallelExplorer(CompiledNet net, int[] initial, int budget) {
+		if (budget < 1 || budget > MAX_BUDGET) {
+			throw new IllegalArgumentException("Budget must be between 1 and " + MAX_BUDGET);
+		}
+		this.net = net;
+		this.budget = budget;
+		this.table = new AtomicLongArray(MIN_CAPACITY);
+		this.mask = MIN_CAPACITY - 1;
+		frontier = new long[] {insert(worker(), initial.clone())};
+	}
+
+	/**
+	 * @return worker of the calling thread, created on its first call
+	 */
+	private Worker worker() {
+		Worker w = byThread.get(Thread.currentThread());
+		if (w == null) {
+			synchronized (workers) {
+				int index = workerCount.get();
+				if (index == MAX_WORKERS) {
+					throw new IllegalStateException("More than " + MAX_WORKERS + " threads");
+				}
+				w = new Worker(index);
+				workers[index] = w;
+				workerCount.set(index + 1);
+			}
+			byThread.put(Thread.currentThread(), w);
+		}
+		return w;
+	}
+
+	/**
+	 * Expands the markings of the next level. Once the budget is reached, successors not
+	 * found before are dropped and the expansion ends with this level.
+	 * @param pool fork-join pool to run on
+	 * @return true, if markings remain to be expanded
+	 */
+	public boolean expand(ForkJoinPool pool) {
+		if (!hasNext()) {
+			return false;
+		}
+		long start = System.nanoTime();
+		long reachable = Math.min((long) stateCount.get() + (long) frontier.length * net.transitionCount, (long) budget + MAX_WORKERS);
+		if (reachable * 2 > table.length()) {
+			grow((int) Long.highestOneBit(reachable * 4 - 1));
+		}
+		pool.invoke(new LevelTask(0, frontier.length));
+		// Collect the next level from the queues of all workers
+		int count = 0;
+		int n = workerCount.get();
+		for (int w=0; w<n; w++) {
+			count += workers[w].queued;
+		}
+		long[] level = new long[count];
+		count = 0;
+		for (int w=0; w<n; w++) {
+			System.arraycopy(workers[w].queue, 0, level, count, workers[w].queued);
+			count += workers[w].queued;
+			workers[w].queued = 0;
+		}
+		frontier = level;
+		depth++;
+		nanos += System.nanoTime() - start;
+		return hasNext();
+	}
+
+	/**
+	 * Moves the entries to a larger table, while no thread inserts. The entries keep only
+	 * 16 bits of the hash, so the hashes are computed again from the arenas.
+	 * @param capacity new number of entries, a power of two
+	 */
+	private void grow(int capacity) {
+		AtomicLongArray old = table;
+		table = new AtomicLongArray(capacity);
+		mask = capacity - 1;
+		int[] marking = new int[net.placeCount];
+		byte[] scratch = new byte[net.placeCount * 5];
+		for (int i=0; i<old.length(); i++) {
+			long entry = old.get(i);
+			if (entry != 0) {
+				decode((entry >>> 32 & 0xFFFF) << 32 | ((entry & 0xFFFFFFFFL) - 1), marking);
+				int slot = MarkingStore.hash(scratch, MarkingStore.encode(marking, scratch)) & mask;
+				while (table.get(slot) != 0) {
+					slot = (slot + 1) & mask;
+				}
+				table.set(slot, entry);
+			}
+		}
+	}
+
+	/**
+	 * Looks up a marking in the visited set and adds it, unless it is contained
+	 * @param w worker of the calling thread, owns the marking if it is new
+	 * @param marking marking to add
+	 * @return worker << 32 | number of the marking, -1 if it is new but the budget is used up
+	 */
+	private long insert(Worker w, int[] marking) {
+		int length = MarkingStore.encode(marking, w.scratch);
+		int hash = MarkingStore.hash(w.scratch, length);
+		int count = (length + 7) >>> 3;
+		Arrays.fill(w.words, 0, count, 0L);
+		for (int b=0; b<length; b++) {
+			w.words[b >>> 3] |= (long) (w.scratch[b] & 0xFF) << ((b & 7) << 3);
+		}
+		long tag = hash >>> 16;	// Bits not used for the slot in small tables
+		boolean written = false;	// Marking written to the arena and not yet published
+		int slot = hash & mask;
+		while (true) {
+			long entry = table.get(slot);
+			if (entry == 0) {
+				if (!written) {
+					if (stateCount.get() >= budget) {
+						truncated = true;
+						return -1;
+					}
+					w.offset.set(w.size, w.used);
+					for (int i=0; i<count; i++) {
+						w.arena.set((w.used >>> 3) + i, w.words[i]);
+					}
+					written = true;
+				}
+				long mine = tag << 48 | (long) w.index << 32 | (w.size + 1L);
+				if (table.compareAndSet(slot, 0, mine)) {
+					w.used += count << 3;	// Next marking starts on a new long
+					stateCount.incrementAndGet();
+					return (long) w.index << 32 | w.size++;
+				}
+				entry = table.get(slot);	// Claimed by another thread meanwhile
+			}
+			if (entry >>> 48 == tag && matches(entry, w.words, count)) {	// If written, the marking is overwritten by the next new one
+				return (entry >>> 32 & 0xFFFF) << 32 | ((entry & 0xFFFFFFFFL) - 1);
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * Compares a published marking with an encoding, a long at a time. The encodings of
+	 * markings are never prefixes of each other, so the first long differing is part of
+	 * the published marking and nothing beyond it is read.
+	 */
+	private boolean matches(long entry, long[] words, int count) {
+		Worker owner = workers[(int) (entry >>> 32 & 0xFFFF)];
+		long word = owner.offset.get((entry & 0xFFFFFFFFL) - 1) >>> 3;
+		for (int i=0; i<count; i++) {
+			if (owner.arena.get(word + i) != words[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes a marking like MarkingStore.decode(), reading a long at a time
+	 */
+	private void decode(long id, int[] marking) {
+		Worker owner = workers[(int) (id >>> 32)];
+		long word = owner.offset.get(id & 0xFFFFFFFFL) >>> 3;
+		long bits = 0;
+		int left = 0;	// Bytes left in bits
+		for (int p=0; p<marking.length; p++) {
+			int value = 0;
+			int shift = 0;
+			int next;
+			do {
+				if (left == 0) {
+					bits = owner.arena.get(word++);
+					left = 8;
+				}
+				next = (int) bits & 0xFF;
+				bits >>>= 8;
+				left--;
+				value |= (next & 0x7F) << shift;
+				shift += 7;
+			} while ((next & 0x80) != 0);
+			marking[p] = value;
+		}
+	}
+
+	/**
+	 * Stops the exploration at the next marking, the counts are incomplete then
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return true, if markings remain to be expanded and neither the budget was exceeded nor the exploration cancelled
+	 */
+	public boolean hasNext() {
+		return frontier.length > 0 && !truncated && !cancelled;
+	}
+
+	/**
+	 * @return true, if all reachable markings were expanded, i.e. the results are exact
+	 */
+	public boolean isComplete() {
+		return frontier.length == 0 && !truncated && !cancelled;
+	}
+
+	/**
+	 * @return true, if the budget stopped the exploration
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * @return number of markings found
+	 */
+	public int getStateCount() {
+		return stateCount.get();
+	}
+
+	/**
+	 * @return number of levels expanded, i.e. the largest distance from the initial marking so far + 1
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return number of markings expanded
+	 */
+	public long getExpanded() {
+		long expanded = 0;
+		for (int w=0; w<workerCount.get(); w++) {
+			expanded += workers[w].expanded;
+		}
+		return expanded;
+	}
+
+	/**
+	 * @return number of edges between markings
+	 */
+	public long getEdgeCount() {
+		long edges = 0;
+		for (int w=0; w<workerCount.get(); w++) {
+			edges += workers[w].edges;
+		}
+		return edges;
+	}
+
+	/**
+	 * @return markings expanded per second
+	 */
+	public double getStatesPerSecond() {
+		return nanos == 0 ? 0.0 : getExpanded() * 1e9 / nanos;
+	}
+
+	/**
+	 * @return bytes allocated for the visited set and the arenas of markings
+	 */
+	public long bytes() {
+		long bytes = (long) table.length() << 3;
+		for (int w=0; w<workerCount.get(); w++) {
+			bytes += workers[w].arena.bytes() + workers[w].offset.bytes() + ((long) MAX_PAGES << 4);
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return identifiers of the expanded markings without enabled transitions, see getMarking()
+	 */
+	public long[] getDeadlocks() {
+		int count = 0;
+		for (int w=0; w<workerCount.get(); w++) {
+			count += workers[w].deadlockCount;
+		}
+		long[] deadlocks = new long[count];
+		count = 0;
+		for (int w=0; w<workerCount.get(); w++) {
+			System.arraycopy(workers[w].deadlocks, 0, deadlocks, count, workers[w].deadlockCount);
+			count += workers[w].deadlockCount;
+		}
+		return deadlocks;
+	}
+
+	/**
+	 * @param id identifier of a marking
+	 * @return tokens of every place in the marking
+	 */
+	public int[] getMarking(long id) {
+		int[] m = new int[net.placeCount];
+		decode(id, m);
+		return m;
+	}
+
+	/**
+	 * @return transitions not enabled in any expanded marking, i.e. dead if the exploration is complete
+	 */
+	public int[] getDeadTransitions() {
+		boolean[] enabled = new boolean[net.transitionCount];
+		for (int w=0; w<workerCount.get(); w++) {
+			for (int t=0; t<enabled.length; t++) {
+				enabled[t] |= workers[w].enabled[t];
+			}
+		}
+		int count = 0;
+		int[] dead = new int[enabled.length];
+		for (int t=0; t<enabled.length; t++) {
+			if (!enabled[t]) {
+				dead[count++] = t;
+			}
+		}
+		return Arrays.copyOf(dead, count);
+	}
+}
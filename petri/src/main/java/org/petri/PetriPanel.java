@@ -8,7 +8,7 @@ import java.awt.Label;
 import java.awt.TextField;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.ArrayList;
+import java.io.File;
 import java.util.Arrays;
 
 import javax.swing.ButtonGroup;
@@ -16,6 +16,7 @@ import javax.swing.Icon;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
@@ -63,8 +64,18 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 	private UpdateViewTaskFactory updateViewTaskFactory;
 	private CheckRealizeTaskFactory checkRealizeTaskFactory;
 	private ExportTaskFactory exportTaskFactory;
+	private SimulateTaskFactory simulateTaskFactory;
+	private EnsembleTaskFactory ensembleTaskFactory;
+	private ReachabilityTaskFactory reachabilityTaskFactory;
+	private BoundednessTaskFactory boundednessTaskFactory;
+	private InvarTaskFactory tInvarTaskFactory;	// Last T-invariant computation, repeated incrementally after edits
+	private InvarTaskFactory pInvarTaskFactory;
 	private boolean firingMode; // Async = false, Sync = true
 	private boolean random;
+	private boolean stochastic; // Stochastic firing using rates, overrides firingMode
+	private boolean tauLeaping;
+	private boolean recordTrace;
+	private boolean reportElimination;
 
 	/**
 	 * Constructor
@@ -97,6 +108,7 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 		top.setLayout(new GridLayout(0,1));
 		top.add(new Label("Control Panel for Petri Net App"));
 		final JComboBox<String> invarHolder = new JComboBox<String>();
+		final JComboBox<String> pInvarHolder = new JComboBox<String>();	// Holds P-invariants
 		loadInvarTaskFactory = new LoadInvarTaskFactory(invarHolder);
 		JButton createBut = new JButton("Create new Petri net");
 		createBut.addActionListener(new ActionListener() {
@@ -108,6 +120,7 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 						return;
 					}
 					invarHolder.removeAllItems();
+					pInvarHolder.removeAllItems();
 					cyNetworkManagerServiceRef.destroyNetwork(petriNet);
 				}
 				petriNet = cyNetworkFactoryServiceRef.createNetwork();	// New Network for Petri Net
@@ -115,6 +128,8 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 				petriUtils = new PetriUtils(petriNet, cyNetworkViewManagerServiceRef,	// Used for updating views later on
 						cyNetworkViewFactoryServiceRef, visualMappingManagerRef,
 						cyLayoutAlgorithmManagerRef, adapter, visualMappingFunctionFactoryRefd); 
+				tInvarTaskFactory = null;	// Invariants belong to the previous net
+				pInvarTaskFactory = null;
 				createEdgeTaskFactory = new CreateEdgeTaskFactory(cyNetworkViewManagerServiceRef, petriNet);
 				createPlaceTaskFactory = new CreatePlaceTaskFactory(cyNetworkViewManagerServiceRef, petriNet);
 				createTransitionTaskFactory = new CreateTransitionTaskFactory(cyNetworkViewManagerServiceRef, petriNet);
@@ -137,6 +152,7 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 				adapter.getTaskManager().execute(itr);
 				SynchronousTaskManager<?> synTaskMan = adapter.getCyServiceRegistrar().getService(SynchronousTaskManager.class);
 				synTaskMan.execute(itr);
+				updateInvariants(adapter);
 			}
 		});
 		top.add(placeBut);
@@ -152,6 +168,7 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 				adapter.getTaskManager().execute(itr);
 				SynchronousTaskManager<?> synTaskMan = adapter.getCyServiceRegistrar().getService(SynchronousTaskManager.class);
 				synTaskMan.execute(itr);
+				updateInvariants(adapter);
 			}
 		});
 		top.add(transBut);
@@ -167,6 +184,7 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 				adapter.getTaskManager().execute(itr);
 				SynchronousTaskManager<?> synTaskMan = adapter.getCyServiceRegistrar().getService(SynchronousTaskManager.class);
 				synTaskMan.execute(itr);
+				updateInvariants(adapter);
 			}
 		});
 		top.add(edgeBut);
@@ -195,6 +213,7 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 						return;
 					}
 					invarHolder.removeAllItems();
+					pInvarHolder.removeAllItems();
 					cyNetworkManagerServiceRef.destroyNetwork(petriNet);
 				}
 				petriNet = cyNetworkFactoryServiceRef.createNetwork();	// New Network for Petri Net
@@ -204,6 +223,8 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 						cyLayoutAlgorithmManagerRef, adapter, visualMappingFunctionFactoryRefd);
 				loadNetworkTaskFactory = new LoadNetworkTaskFactory(cyNetworkManagerServiceRef, cyNetworkNamingServiceRef,
 						eventHelperServiceRef, petriNet, petriUtils);
+				tInvarTaskFactory = null;	// Invariants belong to the previous net
+				pInvarTaskFactory = null;
 				createEdgeTaskFactory = new CreateEdgeTaskFactory(cyNetworkViewManagerServiceRef, petriNet);
 				createPlaceTaskFactory = new CreatePlaceTaskFactory(cyNetworkViewManagerServiceRef, petriNet);
 				createTransitionTaskFactory = new CreateTransitionTaskFactory(cyNetworkViewManagerServiceRef, petriNet);
@@ -282,19 +303,20 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 			}
 		});
 		top.add(resetBut);
-		invarHolder.addActionListener(new ActionListener() {
+		ActionListener colourInvariant = new ActionListener() {	// Paints the edges of the selected T- or P-invariant
 			public void actionPerformed(ActionEvent e) {
-				if (invarHolder.getItemCount() == 0) { // Do not update on resetting the container
+				JComboBox<?> holder = (JComboBox<?>) e.getSource();
+				if (holder.getItemCount() == 0) { // Do not update on resetting the container
 					return;
 				}
-				String invar = (String) invarHolder.getSelectedItem();
+				String invar = (String) holder.getSelectedItem();
 				CyNetworkView [] cnvs = new CyNetworkView[1];
 				cyNetworkViewManagerServiceRef.getNetworkViews(petriNet).toArray(cnvs);
 				CyNetworkView cnv = cnvs[0];
 				for (View <CyEdge> edgeview : cnv.getEdgeViews()){ // Clear locked edge colours from previously selected invariant
 					edgeview.clearValueLock(BasicVisualLexicon.EDGE_PAINT);
 				}
-				// Gather all transitions belonging to invariant and paint their edges
+				// Gather all transitions (or places) belonging to invariant and paint their edges
 				String[] transitions = invar.split(", ");
 				for (String tName : transitions) {
 					boolean once = true;
@@ -311,7 +333,8 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 					}
 					if (trans == null) {
 						JFrame f5 = new JFrame("Error during colouring of invariants");
-						JOptionPane.showMessageDialog(f5, "Couldn't find transition " + tName);
+						JOptionPane.showMessageDialog(f5, "Couldn't find node " + tName);
+						continue;
 					}
 					Iterable<CyEdge>edges = petriNet.getAdjacentEdgeIterable(trans, CyEdge.Type.DIRECTED);
 					for (CyEdge edge : edges) {
@@ -325,7 +348,24 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 					}
 				}
 			}
-		});
+		};
+		invarHolder.addActionListener(colourInvariant);
+		pInvarHolder.addActionListener(colourInvariant);
+		top.add(new Label("Elimination order for invariants"));
+		final JComboBox<String> eliminationOrder = new JComboBox<String>(new String[] {"Greedy", "Fixed", "Static"});
+		top.add(eliminationOrder);
+		top.add(new Label("Threads for invariants"));
+		final TextField invarThreads = new TextField(Integer.toString(Runtime.getRuntime().availableProcessors()));
+		top.add(invarThreads);
+		top.add(new Label("Row limit for invariants (0 = none)"));
+		final TextField invarRows = new TextField("0");
+		top.add(invarRows);
+		top.add(new Label("Memory limit for invariants in MB (0 = none)"));
+		final TextField invarMemory = new TextField(Long.toString(Runtime.getRuntime().maxMemory() / 2 >> 20));
+		top.add(invarMemory);
+		top.add(new Label("Invariant cache size in MB (0 = off)"));
+		final TextField invarCache = new TextField("64");	// Cache of invariants next to the session, by net structure
+		top.add(invarCache);
 		JButton invarBut = new JButton("Compute min. T-Invariants");	// Button for calculating invariants
 		invarBut.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
@@ -334,76 +374,74 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 					JOptionPane.showMessageDialog(f, "No Petri net found.");
 					return;
 				}
-				JFrame f = new JFrame("Warning");
-				int choice = JOptionPane.showConfirmDialog(f, "Computing invariants will take an extremely long time without you being able to exit it if your Petri net is really big.");
-				if (choice != JOptionPane.YES_OPTION) {
+				if (PetriUtils.not_int(invarThreads.getText()) || Integer.parseInt(invarThreads.getText().trim()) < 1) {
+					JFrame f = new JFrame("Error");
+					JOptionPane.showMessageDialog(f, "Invalid amount of threads");
 					return;
 				}
-				invarHolder.removeAllItems();
-				CyNode[] cyTransitionArray = petriUtils.getTransitions();
-				CyNode[] cyPlaceArray = petriUtils.getPlaces();
-				ArrayList<Integer[]> invars = petriUtils.invar(cyTransitionArray, cyPlaceArray);
-				petriUtils.invars = invars;
-				// Transform invariants for visual representation and add them to container
-				for (int index=0; index<invars.size(); index++) {
-					Integer[] invar = invars.get(index);
-					String empty = "";
-					Integer current = 0;
-					for (int i=1; i<=invar.length; i++) {
-						if (invar[invar.length-i] != 0) {
-							String name = "";
-							for (CyNode n : petriNet.getNodeList()) {
-								if (petriNet.getDefaultNodeTable().getRow(n.getSUID()).get("internal id", String.class).equals("t"+current.toString())) {
-									name = petriNet.getDefaultNodeTable().getRow(n.getSUID()).get("name", String.class);
-									break;
-								}
-							}
-							if ((invar[invar.length-i]) > 1){
-								empty += Integer.toString(invar[invar.length-i]) + " " + name + ", ";
-							}
-							else{
-								empty += name + ", ";
-							}
-						}
-						current++;
-					}
-					invarHolder.addItem(empty.substring(0, empty.lastIndexOf(",")));
+				if (PetriUtils.not_int(invarRows.getText()) || Integer.parseInt(invarRows.getText().trim()) < 0
+						|| PetriUtils.not_int(invarMemory.getText()) || Integer.parseInt(invarMemory.getText().trim()) < 0
+						|| PetriUtils.not_int(invarCache.getText()) || Integer.parseInt(invarCache.getText().trim()) < 0) {
+					JFrame f = new JFrame("Error");
+					JOptionPane.showMessageDialog(f, "Invalid row, memory or cache limit");
+					return;
 				}
-				TaskIterator itr = updateViewTaskFactory.createTaskIterator();
-				adapter.getTaskManager().execute(itr);
-				SynchronousTaskManager<?> synTaskMan = adapter.getCyServiceRegistrar().getService(SynchronousTaskManager.class);
-				synTaskMan.execute(itr);
-				petriUtils.is_CTI();
+				invarHolder.removeAllItems();
+				// Compute invariants in the background, the task fills invarHolder and updates the view itself
+				tInvarTaskFactory = new InvarTaskFactory(petriNet, petriUtils, cyNetworkViewManagerServiceRef, invarHolder,
+						EliminationOrder.forName((String) eliminationOrder.getSelectedItem()), Integer.parseInt(invarThreads.getText().trim()),
+						Integer.parseInt(invarRows.getText().trim()), Integer.parseInt(invarMemory.getText().trim()), reportElimination, false,
+						invariantCache(adapter, invarCache.getText()));
+				adapter.getTaskManager().execute(tInvarTaskFactory.createTaskIterator());
 			}
 		});
 		top.add(invarBut);
+		JButton pInvarBut = new JButton("Compute min. P-Invariants");	// Button for calculating place invariants
+		pInvarBut.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				if (petriNet == null) {
+					JFrame f = new JFrame("Error");
+					JOptionPane.showMessageDialog(f, "No Petri net found.");
+					return;
+				}
+				if (PetriUtils.not_int(invarThreads.getText()) || Integer.parseInt(invarThreads.getText().trim()) < 1
+						|| PetriUtils.not_int(invarRows.getText()) || Integer.parseInt(invarRows.getText().trim()) < 0
+						|| PetriUtils.not_int(invarMemory.getText()) || Integer.parseInt(invarMemory.getText().trim()) < 0
+						|| PetriUtils.not_int(invarCache.getText()) || Integer.parseInt(invarCache.getText().trim()) < 0) {
+					JFrame f = new JFrame("Error");
+					JOptionPane.showMessageDialog(f, "Invalid amount of threads, row, memory or cache limit");
+					return;
+				}
+				pInvarHolder.removeAllItems();
+				pInvarTaskFactory = new InvarTaskFactory(petriNet, petriUtils, cyNetworkViewManagerServiceRef, pInvarHolder,
+						EliminationOrder.forName((String) eliminationOrder.getSelectedItem()), Integer.parseInt(invarThreads.getText().trim()),
+						Integer.parseInt(invarRows.getText().trim()), Integer.parseInt(invarMemory.getText().trim()), reportElimination, true,
+						invariantCache(adapter, invarCache.getText()));
+				adapter.getTaskManager().execute(pInvarTaskFactory.createTaskIterator());
+			}
+		});
+		top.add(pInvarBut);
 		JButton checkRealize = new JButton("Check Realizability");
 		checkRealize.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				JFrame f = new JFrame("Checking Realizability");
-				int all = JOptionPane.showConfirmDialog(f, "Compute all realizable permutations?");
-				JOptionPane.showMessageDialog(f, all);
+				int all = JOptionPane.showConfirmDialog(f, "Compute all realizable permutations? (No: stop at the first one)");
 				if (all != JOptionPane.NO_OPTION && all != JOptionPane.YES_OPTION) { // 1, 0
 					return;
 				}
-				checkRealizeTaskFactory = new CheckRealizeTaskFactory(petriNet, invarHolder, petriUtils, (all == 0));
-				TaskIterator itr = checkRealizeTaskFactory.createTaskIterator();
-				SynchronousTaskManager<?> synTaskMan = adapter.getCyServiceRegistrar().getService(SynchronousTaskManager.class);
-				synTaskMan.execute(itr);
-				String output = "";
-				for (String perm : petriUtils.realize) {
-					output += perm + "\n";	
-				}
-				// Now make output a little prettier by removing all '[' and ']'
-				output.replaceAll("[", "");
-				JOptionPane.showMessageDialog(f, "Perms done");
-				JOptionPane.showMessageDialog(f, output);
+				// Search in the background, so it can be cancelled, the task shows the result itself
+				checkRealizeTaskFactory = new CheckRealizeTaskFactory(petriNet, invarHolder, petriUtils, (all == 0),
+						Runtime.getRuntime().availableProcessors());
+				adapter.getTaskManager().execute(checkRealizeTaskFactory.createTaskIterator());
 			}
 		});
 		top.add(checkRealize);
 		top.add(new Label("How often do you want to fire?"));
 		final TextField times = new TextField("1");			// Used to determine how often to fire on button click
 		top.add(times);
+		top.add(new Label("Stop when (e.g. deadlock; P1 >= 10; T1 fired 5; time 60)"));
+		final TextField stopWhen = new TextField("deadlock");	// Conditions ending a simulation early
+		top.add(stopWhen);
 		JButton fireBut = new JButton("Fire Petri net"); 		// Button for firing the Petri Net
 		fireBut.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
@@ -412,18 +450,102 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 					JOptionPane.showMessageDialog(f, "No Petri net found.");
 					return;
 				}
-				CyNode[] cyTransitionArray = petriUtils.getTransitions();
-				for (int i=0; i<Integer.parseInt(times.getText()); i++) {				// Fire Petri Net x times
-					petriUtils.fire(cyTransitionArray, firingMode, random);
+				if (PetriUtils.not_int(times.getText()) || Integer.parseInt(times.getText().trim()) < 0) {
+					JFrame f = new JFrame("Error");
+					JOptionPane.showMessageDialog(f, "Invalid amount of firings");
+					return;
 				}
-				TaskIterator itr = updateViewTaskFactory.createTaskIterator();
-				adapter.getTaskManager().execute(itr);
-				SynchronousTaskManager<?> synTaskMan = adapter.getCyServiceRegistrar().getService(SynchronousTaskManager.class);
-				synTaskMan.execute(itr);
+				File trace = null;
+				if (recordTrace) {	// Ask where to store the trajectory
+					JFileChooser chooser = new JFileChooser();
+					chooser.setDialogTitle("Record trajectory to");
+					if (chooser.showSaveDialog(jPanel) != JFileChooser.APPROVE_OPTION) {
+						return;
+					}
+					trace = chooser.getSelectedFile();
+				}
+				// Fire Petri Net x times in the background, the view is updated by the task itself
+				simulateTaskFactory = new SimulateTaskFactory(petriNet, petriUtils, cyNetworkViewManagerServiceRef,
+						Integer.parseInt(times.getText().trim()), firingMode, random, stochastic, tauLeaping, trace, stopWhen.getText());
+				adapter.getTaskManager().execute(simulateTaskFactory.createTaskIterator());
 			}
 		});
 		top.add(fireBut);
+		top.add(new Label("How many replicates for the ensemble?"));
+		final TextField replicates = new TextField("100");	// Number of independent runs of an ensemble
+		top.add(replicates);
+		JButton ensembleBut = new JButton("Run ensemble");	// Button for Monte Carlo statistics over many runs
+		ensembleBut.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				if (petriNet == null) {
+					JFrame f = new JFrame("Error");
+					JOptionPane.showMessageDialog(f, "No Petri net found.");
+					return;
+				}
+				if (PetriUtils.not_int(times.getText()) || Integer.parseInt(times.getText().trim()) < 0
+						|| PetriUtils.not_int(replicates.getText()) || Integer.parseInt(replicates.getText().trim()) < 1) {
+					JFrame f = new JFrame("Error");
+					JOptionPane.showMessageDialog(f, "Invalid amount of firings or replicates");
+					return;
+				}
+				ensembleTaskFactory = new EnsembleTaskFactory(petriNet, petriUtils, Integer.parseInt(times.getText().trim()),
+						Integer.parseInt(replicates.getText().trim()), firingMode, random);
+				adapter.getTaskManager().execute(ensembleTaskFactory.createTaskIterator());
+			}
+		});
+		top.add(ensembleBut);
+		top.add(new Label("Maximal number of markings in the reachability graph / coverability tree"));
+		final TextField budget = new TextField("1000000");	// Markings stored before the reachability graph or coverability tree is cut off
+		top.add(budget);
+		top.add(new Label("Threads for the reachability graph"));
+		final TextField reachThreads = new TextField(Integer.toString(Runtime.getRuntime().availableProcessors()));
+		top.add(reachThreads);
+		JButton reachBut = new JButton("Build reachability graph");	// Button for reachability analysis from the initial tokens
+		reachBut.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				if (petriNet == null) {
+					JFrame f = new JFrame("Error");
+					JOptionPane.showMessageDialog(f, "No Petri net found.");
+					return;
+				}
+				if (PetriUtils.not_int(budget.getText()) || Integer.parseInt(budget.getText().trim()) < 1
+						|| Integer.parseInt(budget.getText().trim()) > ParallelExplorer.MAX_BUDGET) {
+					JFrame f = new JFrame("Error");
+					JOptionPane.showMessageDialog(f, "Invalid maximal number of markings, at most " + ParallelExplorer.MAX_BUDGET + " for the reachability graph");
+					return;
+				}
+				if (PetriUtils.not_int(reachThreads.getText()) || Integer.parseInt(reachThreads.getText().trim()) < 1) {
+					JFrame f = new JFrame("Error");
+					JOptionPane.showMessageDialog(f, "Invalid amount of threads");
+					return;
+				}
+				reachabilityTaskFactory = new ReachabilityTaskFactory(petriNet, petriUtils, Integer.parseInt(budget.getText().trim()),
+						Integer.parseInt(reachThreads.getText().trim()));
+				adapter.getTaskManager().execute(reachabilityTaskFactory.createTaskIterator());
+			}
+		});
+		top.add(reachBut);
+		JButton boundBut = new JButton("Check boundedness");	// Button for the coverability tree from the current tokens
+		boundBut.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				if (petriNet == null) {
+					JFrame f = new JFrame("Error");
+					JOptionPane.showMessageDialog(f, "No Petri net found.");
+					return;
+				}
+				if (PetriUtils.not_int(budget.getText()) || Integer.parseInt(budget.getText().trim()) < 1) {
+					JFrame f = new JFrame("Error");
+					JOptionPane.showMessageDialog(f, "Invalid maximal number of markings");
+					return;
+				}
+				boundednessTaskFactory = new BoundednessTaskFactory(petriNet, petriUtils, Integer.parseInt(budget.getText().trim()));
+				adapter.getTaskManager().execute(boundednessTaskFactory.createTaskIterator());
+			}
+		});
+		top.add(boundBut);
 		top.add(invarHolder);
+		top.add(new Label("P-invariants"));
+		top.add(pInvarHolder);
 		jPanel.add(top, BorderLayout.PAGE_START);
 		
 		JPanel bot = new JPanel();					// Lower panel of jPanel
@@ -433,6 +555,7 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 		radSync.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				firingMode = true;
+				stochastic = false;
 			}
 		});
 		JRadioButton radAsync = new JRadioButton("Asynchronous firing");
@@ -440,6 +563,21 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 		radAsync.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				firingMode = false;
+				stochastic = false;
+			}
+		});
+		JRadioButton radStoch = new JRadioButton("Stochastic firing");
+		stochastic = false;
+		radStoch.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				stochastic = true;
+			}
+		});
+		tauLeaping = false;
+		JCheckBox tauSel = new JCheckBox("Tau-leaping");
+		tauSel.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				tauLeaping = !tauLeaping;
 			}
 		});
 		random = true;
@@ -450,16 +588,62 @@ public class PetriPanel extends JPanel implements CytoPanelComponent {
 			}
 		});
 		rndSel.setSelected(true);
+		recordTrace = false;
+		JCheckBox traceSel = new JCheckBox("Record trajectory");
+		traceSel.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				recordTrace = !recordTrace;
+			}
+		});
+		reportElimination = false;
+		JCheckBox reportSel = new JCheckBox("Report elimination steps");
+		reportSel.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				reportElimination = !reportElimination;
+			}
+		});
 		ButtonGroup frOpt = new ButtonGroup();
 		frOpt.add(radSync);
 		frOpt.add(radAsync);
+		frOpt.add(radStoch);
 		bot.add(radSync);
 		bot.add(radAsync);
 		bot.add(rndSel);
+		bot.add(radStoch);
+		bot.add(tauSel);
+		bot.add(traceSel);
+		bot.add(reportSel);
 		jPanel.add(bot, BorderLayout.PAGE_END);
 		this.add(jPanel);
 	}
 
+	/**
+	 * Updates previously computed invariants after a structural edit in the background
+	 * @param adapter CyAppAdapter, for the task manager
+	 */
+	private void updateInvariants(CyAppAdapter adapter) {
+		if (tInvarTaskFactory != null) {
+			adapter.getTaskManager().execute(tInvarTaskFactory.createUpdateTaskIterator());
+		}
+		if (pInvarTaskFactory != null) {
+			adapter.getTaskManager().execute(pInvarTaskFactory.createUpdateTaskIterator());
+		}
+	}
+
+	/**
+	 * Creates the invariant cache next to the current session
+	 * @param adapter CyAppAdapter, for the session file
+	 * @param megabytes size of the cache in MB as entered by the user
+	 * @return cache, null if caching is turned off
+	 */
+	private static InvariantCache invariantCache(CyAppAdapter adapter, String megabytes) {
+		long size = Long.parseLong(megabytes.trim()) << 20;
+		if (size == 0) {
+			return null;
+		}
+		return InvariantCache.forSession(adapter.getCySessionManager().getCurrentSessionFileName(), size);
+	}
+
 	@Override
 	public Component getComponent() {
 		return this;
@@ -4,9 +4,9 @@ import java.awt.Color;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
 
@@ -48,6 +48,10 @@ public class PetriUtils {
 	private CyAppAdapter adapter;
 	private VisualMappingFunctionFactory vmffd;
 	protected ArrayList<Integer[]> invars;
+	protected ArrayList<Integer[]> pInvars;	// Minimal P-invariants, in the order of getPlaces()
+	protected InvariantBasis tInvarBasis;	// Last complete T-invariant result, updated after edits
+	protected InvariantBasis pInvarBasis;
+	protected String invarReport;	// Elimination order and row counts of the last invariant computation
 	protected ArrayList<String> realize;
 	
 	/**
@@ -70,6 +74,7 @@ public class PetriUtils {
 		this.adapter = adapter;
 		this.vmffd = vmffd;
 		this.invars = new ArrayList<Integer[]>(); // holds the minimal t-invariants, should user decide to have them calculated
+		this.pInvars = new ArrayList<Integer[]>();
 		this.realize = new ArrayList<String>();
 	}
 
@@ -131,6 +136,7 @@ public class PetriUtils {
 		petriNet.getDefaultNodeTable().createColumn("initial tokens", Integer.class, true);
 		petriNet.getDefaultNodeTable().createColumn("type", String.class, true);
 		petriNet.getDefaultNodeTable().createColumn("fired", Integer.class, false);
+		petriNet.getDefaultNodeTable().createColumn("rate", Double.class, false);
 		petriNet.getDefaultEdgeTable().createColumn("internal id", String.class, true);
 		petriNet.getDefaultEdgeTable().createColumn("weight", Integer.class, true);
 	}
@@ -266,58 +272,30 @@ public class PetriUtils {
 	}
 	
 	/**
-	 * Fire Petri Net. Goes through all transitions and checks which of them can fired, then does so for those.
+	 * Fire Petri Net once. Goes through all transitions and checks which of them can fired, then does so for those.
 	 * @param cyTransitionArray Array of transition type nodes
 	 * @param random randomize firing order
 	 * @param firingMode synchronous (true) or asynchronous (false) firing
 	 */
 	public void fire(CyNode[] cyTransitionArray, boolean firingMode, boolean random) {
-		if (random) {
-			List <CyNode> transitions = Arrays.asList(cyTransitionArray);
-			Collections.shuffle(transitions);
-			transitions.toArray(cyTransitionArray);
-		}
-		ArrayList<CyNode> fireableTransitions = new ArrayList<CyNode>();
-		for (int i=0; i<cyTransitionArray.length; i++){
-			Iterable<CyEdge>incomingEdges = petriNet.getAdjacentEdgeIterable(cyTransitionArray[i], CyEdge.Type.INCOMING); // Incoming Edges for a Transition
-			boolean fireable = true;
-			for (CyEdge incomingEdge: incomingEdges){
-				if (petriNet.getDefaultNodeTable().getRow(incomingEdge.getSource().getSUID()).get("tokens", Integer.class) < petriNet.getDefaultEdgeTable().getRow(incomingEdge.getSUID()).get("weight", Integer.class)){
-					fireable = false; // Transition can't be fired if the source of an incoming edge does not have enough tokens
-					break;
-				}
-			}
-			if (fireable) {
-				fireableTransitions.add(cyTransitionArray[i]);
-				Iterable<CyEdge>incomingEdges1 = petriNet.getAdjacentEdgeIterable(cyTransitionArray[i], CyEdge.Type.INCOMING);
-				// Remove tokens from sources of incoming before continuing for the next transition. Prevents negative token amounts
-				for (CyEdge incomingEdge: incomingEdges1){	
-					Integer newAmount = petriNet.getDefaultNodeTable().getRow(incomingEdge.getSource().getSUID()).get("tokens", Integer.class)
-							- petriNet.getDefaultEdgeTable().getRow(incomingEdge.getSUID()).get("weight", Integer.class);
-					petriNet.getDefaultNodeTable().getRow(incomingEdge.getSource().getSUID()).set("tokens", newAmount);
-				}
-				if (!firingMode) {
-					break;
-				}
-			}
-		}
-		for (int i = 0; i<fireableTransitions.size(); i++){
-			Iterable<CyEdge>outgoingEdges = petriNet.getAdjacentEdgeIterable(fireableTransitions.get(i),  CyEdge.Type.OUTGOING);
-			// Add tokens to targets of outgoing edges
-			for (CyEdge outgoingEdge: outgoingEdges){
-				Integer newAmount = petriNet.getDefaultNodeTable().getRow(outgoingEdge.getTarget().getSUID()).get("tokens", Integer.class)
-						+ petriNet.getDefaultEdgeTable().getRow(outgoingEdge.getSUID()).get("weight", Integer.class);
-				petriNet.getDefaultNodeTable().getRow(outgoingEdge.getTarget().getSUID()).set("tokens", newAmount);
-			}
+		fire(cyTransitionArray, firingMode, random, 1);
+	}
+
+	/**
+	 * Fire Petri Net repeatedly. The net is compiled once, all steps run on the compiled
+	 * marking, which is written back to the tokens and fired columns when the run ends.
+	 * @param cyTransitionArray Array of transition type nodes
+	 * @param firingMode synchronous (true) or asynchronous (false) firing
+	 * @param random randomize firing order
+	 * @param times how often to fire
+	 */
+	public void fire(CyNode[] cyTransitionArray, boolean firingMode, boolean random, int times) {
+		CompiledNet net = new CompiledNet(petriNet, cyTransitionArray, getPlaces());
+		Simulator simulator = new Simulator(net, firingMode, random);
+		for (int i=0; i<times; i++) {
+			simulator.step();
 		}
-		for (int i = 0; i<cyTransitionArray.length; i++){
-			if (fireableTransitions.contains(cyTransitionArray[i])){	// Updates, which transitions have fired
-				petriNet.getDefaultNodeTable().getRow(cyTransitionArray[i].getSUID()).set("fired", 1);
-			}
-			else {
-				petriNet.getDefaultNodeTable().getRow(cyTransitionArray[i].getSUID()).set("fired", 0);	// Reset which transitions were fired
-			}
-		}	
+		simulator.writeBack(petriNet);
 	}
 	
 	/**
@@ -335,198 +313,163 @@ public class PetriUtils {
 	}
 	
 	/**
-	 * Calculates invariants of Petri Net.
+	 * Calculates the minimal-support invariants of Petri Net.
 	 * The transitions are represented within the array in REVERSE ORDER.
 	 * @param cyTransitionArray CyNode[] containing all transitions
 	 * @param cyPlaceArray CyNode[] containing all places
 	 * @return invariants contains all invariants as Integer[] elements of an ArrayList
 	 */
 	public ArrayList<Integer[]> invar(CyNode[] cyTransitionArray, CyNode[] cyPlaceArray) {
-		//Creating incidenceMatrix
-		Integer[][] incidenceMatrix = new Integer[cyTransitionArray.length][cyPlaceArray.length]; 
-		for (Integer m = 0; m < cyTransitionArray.length; m++) {
-			for (Integer n = 0; n < cyPlaceArray.length; n++){
-				incidenceMatrix[m][n] = 0;
-				Iterable<CyEdge>incomingEdges = petriNet.getAdjacentEdgeIterable(cyPlaceArray[n], CyEdge.Type.INCOMING);
-				Iterable<CyEdge>outgoingEdges = petriNet.getAdjacentEdgeIterable(cyPlaceArray[n], CyEdge.Type.OUTGOING);
-				for (CyEdge incomingEdge : incomingEdges){
-					if (cyTransitionArray[m].getSUID().equals(incomingEdge.getSource().getSUID())){
-						incidenceMatrix[m][n] = petriNet.getDefaultEdgeTable().getRow(incomingEdge.getSUID()).get("weight", Integer.class);
-					}
-				}
-				for (CyEdge outgoingEdge : outgoingEdges){
-					if (cyTransitionArray[m].getSUID().equals(outgoingEdge.getTarget().getSUID())){
-						incidenceMatrix[m][n] = -1 * petriNet.getDefaultEdgeTable().getRow(outgoingEdge.getSUID()).get("weight", Integer.class);
-					}
-				}
-			}
-		}
-		ArrayList<Integer[]> incMatList = new ArrayList<Integer[]>(Arrays.asList(incidenceMatrix));
-		//Creating identity matrix
-		Integer[][] identity = new Integer[cyTransitionArray.length][cyTransitionArray.length];
-		for (Integer n = 0; n < cyTransitionArray.length; n++){
-			for (Integer n2 = 0; n2 < cyTransitionArray.length; n2++){
-				if (n.equals(n2)){
-					identity[n][n2] = 1;
-				}
-				else {
-					identity[n][n2] = 0;
-				}
-			}
-		}
-		ArrayList<Integer[]> identList = new ArrayList<Integer[]>(Arrays.asList(identity));
-		//Iterating over all columns/places to find incoming and outgoing edges that nullify each other
-		for (Integer p = cyPlaceArray.length - 1; p > -1; p--){
-			ArrayList<Integer> posPositions = new ArrayList<Integer>();
-			ArrayList<Integer> negPositions = new ArrayList<Integer>();
-			for (Integer t = 0; t < incMatList.size(); t++){
-				if (incMatList.get(t)[p] > 0){
-					posPositions.add(t);
-				} else if (incMatList.get(t)[p] < 0){
-					negPositions.add(t);
-				}
-			}
-			//Calculating the new Lines in the incidence and the identity matrix according to the prior found edges and their according transitions
-			ArrayList<Integer[]> newLines = new ArrayList<Integer[]>();
-			ArrayList<Integer[]> newIdentLines = new ArrayList<Integer[]>();
-			for (Integer pos = 0; pos<posPositions.size(); pos++){
-				for (Integer neg = 0; neg<negPositions.size(); neg++){
-					Integer a = incMatList.get(posPositions.get(pos))[p];
-					Integer b = -1 * incMatList.get(negPositions.get(neg))[p];
-					if (a != 0){
-						while (b != 0){
-							if (a > b){
-								a = a - b;
-							}
-							else{
-								b = b - a;
-							}
-						}
-					}
-					Integer ggT = a;
-					Integer kgV = incMatList.get(posPositions.get(pos))[p] * (-1 * incMatList.get(negPositions.get(neg))[p] / ggT);
-					Integer posDiv = kgV / incMatList.get(posPositions.get(pos))[p];
-					Integer negDiv = -1 * kgV / incMatList.get(negPositions.get(neg))[p];
-					Integer[] newLine = new Integer[cyPlaceArray.length];
-					Integer[] newIdentLine = new Integer[cyTransitionArray.length];
-					for (Integer place=0; place<cyPlaceArray.length; place++){
-						newLine[place] = posDiv * incMatList.get(posPositions.get(pos))[place] + negDiv * incMatList.get(negPositions.get(neg))[place];
-					}
-					for (Integer transition=0; transition<cyTransitionArray.length; transition++){
-						newIdentLine[transition] = posDiv * identList.get(posPositions.get(pos))[transition] + negDiv * identList.get(negPositions.get(neg))[transition];
-					}
-					newLines.add(newLine);
-					newIdentLines.add(newIdentLine);
-				}
-			}
-			//Deleting the used rows 
-			ArrayList<Integer> positionsToDelete = new ArrayList<Integer>();
-			positionsToDelete.addAll(negPositions);
-			positionsToDelete.addAll(posPositions);
-			Collections.sort(positionsToDelete, Collections.reverseOrder());
-			for (int pos: positionsToDelete){
-				incMatList.remove(pos);
-				identList.remove(pos);
-			}
-			incMatList.addAll(newLines);
-			identList.addAll(newIdentLines);
+		return invar(cyTransitionArray, cyPlaceArray, new EliminationOrder.Greedy(), 1);
+	}
+
+	/**
+	 * Calculates the minimal-support invariants of Petri Net, eliminating places in the given order.
+	 * The transitions are represented within the array in REVERSE ORDER.
+	 * A report of the elimination steps is stored in invarReport.
+	 * @param cyTransitionArray CyNode[] containing all transitions
+	 * @param cyPlaceArray CyNode[] containing all places
+	 * @param order strategy picking the next place to eliminate
+	 * @param parallelism number of threads combining rows in each elimination step
+	 * @return invariants contains all invariants as Integer[] elements of an ArrayList
+	 */
+	public ArrayList<Integer[]> invar(CyNode[] cyTransitionArray, CyNode[] cyPlaceArray, EliminationOrder order, int parallelism) {
+		//Eliminating all columns/places with the Farkas algorithm, rows are kept exact and as small as possible
+		FarkasEngine engine = new FarkasEngine(cyTransitionArray.length, cyPlaceArray.length, order, parallelism);
+		ArrayList<long[]> result = engine.compute(incidence(cyTransitionArray, cyPlaceArray));
+		invarReport = engine.getReport(names(cyPlaceArray));
+		return toInvariants(result);
+	}
+
+	/**
+	 * Creates the sparse incidence matrix with one row per transition and one column per place
+	 * in one pass over the edges
+	 * @param cyTransitionArray CyNode[] containing all transitions
+	 * @param cyPlaceArray CyNode[] containing all places
+	 * @return incidence matrix
+	 */
+	public Incidence incidence(CyNode[] cyTransitionArray, CyNode[] cyPlaceArray) {
+		return new Incidence(new CompiledNet(petriNet, cyTransitionArray, cyPlaceArray));
+	}
+
+	/**
+	 * @param nodes CyNode[] of places or transitions
+	 * @return names of the nodes in the same order
+	 */
+	public String[] names(CyNode[] nodes) {
+		String[] names = new String[nodes.length];
+		for (int n = 0; n < nodes.length; n++) {
+			names[n] = petriNet.getDefaultNodeTable().getRow(nodes[n].getSUID()).get("name", String.class);
 		}
-		//Filtering the invariants out of the finished and processed identity matrix
+		return names;
+	}
+
+	/**
+	 * Converts the results of the FarkasEngine and sorts them by their sum of coefficients for display.
+	 * All results have minimal support already, so none are filtered.
+	 * @param result invariants as computed by the FarkasEngine
+	 * @return invariants contains all invariants as Integer[] elements of an ArrayList
+	 * @throws ArithmeticException if a coefficient does not fit into an Integer
+	 */
+	public ArrayList<Integer[]> toInvariants(ArrayList<long[]> result) {
 		ArrayList<Integer[]> invariants = new ArrayList<Integer[]>();
-		for (Integer m = 0; m<incMatList.size(); m++){
-			Boolean isZero = true;
-			for (Integer n = 0; n< cyPlaceArray.length; n++){
-				if(incMatList.get(m)[n] != 0){
-					isZero = false;
-					break;
-				}
-			}
-			if (isZero) {
-				invariants.add(identList.get(m));
-			}
+		for (long[] invariant : result) {
+			invariants.add(toInteger(invariant));
 		}
-		ArrayList<Integer> values = new ArrayList<Integer>();
-		ArrayList<Integer[]> sortedcand = new ArrayList<Integer[]>();
-		for (Integer x = 0; x < invariants.size(); x++){
-			Integer tempcount = 0;
-			for (Integer y = 0; y < invariants.get(x).length; y++){
-				tempcount += invariants.get(x)[y];
+		final HashMap<Integer[], Long> sums = new HashMap<Integer[], Long>();
+		for (Integer[] invariant : invariants) {
+			long sum = 0;
+			for (Integer coefficient : invariant) {
+				sum += coefficient;
 			}
-			values.add(tempcount);
-		}
-		Integer max = values.get(values.indexOf(Collections.max(values)));
-		for (Integer z = 0; z < values.size(); z++){
-			Integer minIndex = values.indexOf(Collections.min(values));
-			sortedcand.add(invariants.get(minIndex));
-			values.set(minIndex, max+1);
+			sums.put(invariant, sum);
 		}
-		Integer currRank = 0;
-		ArrayList<Integer[]> invariantcont = new ArrayList<Integer[]>();
-		for (Integer l = 0; l < sortedcand.size(); l++){
-			invariantcont.add(sortedcand.get(l));
-			Integer newRank = rank(invariantcont.toArray(new Integer[invariantcont.size()][invariantcont.get(0).length]));
-			if (newRank > currRank){
-				currRank = newRank;
-			}
-			else{
-				invariantcont.remove(invariantcont.size() - 1);
+		Collections.sort(invariants, new Comparator<Integer[]>() {
+			public int compare(Integer[] a, Integer[] b) {
+				return Long.compare(sums.get(a), sums.get(b));
 			}
-		}
-		return invariantcont;
+		});
+		return invariants;
 	}
 
-	public Integer rank(Integer[][] matrix){Double [][] doublemat = new Double[matrix.length][matrix[0].length];
-		for (Integer a = 0; a < matrix.length; a++){
-			for (Integer b = 0; b < matrix[0].length; b++){
-				doublemat[a][b] = Double.valueOf((matrix[a][b]));
-			}
+	/**
+	 * @param invariant invariant as computed by the FarkasEngine
+	 * @return invariant as Integer[]
+	 * @throws ArithmeticException if a coefficient does not fit into an Integer
+	 */
+	public static Integer[] toInteger(long[] invariant) {
+		Integer[] invarInt = new Integer[invariant.length];
+		for (int t = 0; t < invariant.length; t++) {
+			invarInt[t] = Math.toIntExact(invariant[t]);
 		}
-		Integer pivot_r = 0;
-		Integer pivot_c = 0;
-		Integer m = doublemat.length;
-		Integer n = doublemat[0].length;
-		while (pivot_r < m && pivot_c < n){
-			Integer largest = 0;
-			for ( Integer i = pivot_r; i < m; i++){
-				if (Math.abs(doublemat[i][pivot_c]) > Math.abs(doublemat[largest][pivot_c])){
-					largest = i;
+		return invarInt;
+	}
+
+	/**
+	 * Resolves the names of all transitions once, for labelling invariants
+	 * @return names of the transitions, indexed by the number of their internal id "t0", "t1", ...
+	 */
+	public String[] transitionNamesById() {
+		String[] names = new String[getTransitions().length];
+		Arrays.fill(names, "");
+		for (CyNode n : petriNet.getNodeList()) {
+			String id = petriNet.getDefaultNodeTable().getRow(n.getSUID()).get("internal id", String.class);
+			if (id != null && id.startsWith("t") && !not_int(id.substring(1))) {
+				int index = Integer.parseInt(id.substring(1));
+				if (index >= 0 && index < names.length) {
+					names[index] = petriNet.getDefaultNodeTable().getRow(n.getSUID()).get("name", String.class);
 				}
 			}
-			if (doublemat[largest][pivot_c] != 0){
-				//swap rows
-				for (int x = 0; x < n; x++){
-					Double temp_val = doublemat[pivot_r][x];
-					doublemat[pivot_r][x] = doublemat[largest][x];
-					doublemat[largest][x] = temp_val;
+		}
+		return names;
+	}
+
+	/**
+	 * Creates the label of an invariant as shown in the invariant container, e.g. "T1, 2 T3".
+	 * The transitions are represented within the invariant in REVERSE ORDER.
+	 * @param invar invariant
+	 * @param names names of the transitions as returned by transitionNamesById()
+	 * @return label
+	 */
+	public static String invarLabel(Integer[] invar, String[] names) {
+		StringBuilder label = new StringBuilder();
+		for (int i=1; i<=invar.length; i++) {
+			int coefficient = invar[invar.length-i];
+			if (coefficient != 0) {
+				if (label.length() > 0) {
+					label.append(", ");
 				}
-				for (int y = pivot_r + 1; y < m; y++){
-					Double div = doublemat[y][pivot_c] / doublemat[pivot_r][pivot_c];
-					doublemat[y][pivot_c] = 0.0;
-					for (int z = pivot_c + 1; z < n; z++){
-						doublemat[y][z] = doublemat[y][z] - (doublemat[pivot_r][z] * div);
-					}
+				if (coefficient > 1) {
+					label.append(coefficient).append(" ");
 				}
-				pivot_r++;
-				pivot_c++;
-			}
-			else {
-				pivot_c++;
+				label.append(names[i-1]);
 			}
 		}
-		Integer rank = 0;
-		for (Integer r = 0; r < doublemat.length; r++){
-			boolean status = false;
-			for (Integer c = 0; c < doublemat[0].length; c++){
-				if (doublemat[r][c] != 0){
-					status = true;
+		return label.toString();
+	}
+
+	/**
+	 * Creates the label of a P-invariant as shown in the invariant container, e.g. "P1, 2 P3"
+	 * @param invar P-invariant, in the order of getPlaces()
+	 * @param names names of the places in the same order
+	 * @return label
+	 */
+	public static String pInvarLabel(Integer[] invar, String[] names) {
+		StringBuilder label = new StringBuilder();
+		for (int i=0; i<invar.length; i++) {
+			if (invar[i] != 0) {
+				if (label.length() > 0) {
+					label.append(", ");
 				}
-			}
-			if (status == true){
-				rank++;
+				if (invar[i] > 1) {
+					label.append(invar[i]).append(" ");
+				}
+				label.append(names[i]);
 			}
 		}
-		return rank;
+		return label.toString();
 	}
+
 	/**
 	 * Checks whether network is CTI or not
 	 */
@@ -584,6 +527,36 @@ public class PetriUtils {
 		}
 	}
 	
+	/**
+	 * Checks whether every place is covered by a P-invariant (CPI), which makes the
+	 * net conservative and thus structurally bounded, and tells the user
+	 * @param cyPlaceArray CyNode[] containing all places, in the order of pInvars
+	 */
+	public void is_CPI(CyNode[] cyPlaceArray) {
+		boolean[] covered = new boolean[cyPlaceArray.length];
+		for (Integer[] invar : pInvars) {
+			for (int i=0; i<invar.length; i++) {
+				if (invar[i] > 0) {
+					covered[i] = true;
+				}
+			}
+		}
+		String notCovered = "";
+		for (int i=0; i<covered.length; i++) {
+			if (!covered[i]) {
+				notCovered += petriNet.getDefaultNodeTable().getRow(cyPlaceArray[i].getSUID()).get("name", String.class) + "\n";
+			}
+		}
+		//returning the information to the user
+		JFrame f = new JFrame("Check for CPI");
+		if (notCovered.isEmpty()) {
+			JOptionPane.showMessageDialog(f, "Network is CPI, hence conservative and structurally bounded");
+		}
+		else {
+			JOptionPane.showMessageDialog(f, "Network is not CPI\nNon-CPI Places:\n" + notCovered);
+		}
+	}
+
 	/**
 	 * Checks, whether a string is NOT an integer
 	 * @param toCheck string to check
@@ -602,55 +575,4 @@ public class PetriUtils {
 	    sc.close();	
 	    return invalid;
 	}
-
-	@SuppressWarnings("unchecked")
-	public void namingsense(ArrayList<CyNode> transitions, ArrayList<String> used,
-			HashMap<String, Integer> times, HashMap<String, Integer> tokens,
-			ArrayList<String> realize, boolean all) {
-		for (CyNode trans : transitions) {
-			if (!all && !realize.isEmpty()) { // This one just doesn't seem to work at all, don't get why though
-				return;
-			}
-			// Check if transitions can fire
-			boolean canFire = true;
-			for (CyEdge e : petriNet.getAdjacentEdgeIterable(trans, CyEdge.Type.INCOMING)) {
-				if (tokens.get(petriNet.getDefaultNodeTable().getRow(e.getSource().getSUID()).get("name", String.class))
-						< petriNet.getDefaultEdgeTable().getRow(e.getSUID()).get("weight", Integer.class)) {
-					canFire = false;
-					break;
-				}
-			}
-			if (!canFire) {
-				continue;
-			}
-			// Copy transitions and times for recursion
-			ArrayList<CyNode> newTransitions = (ArrayList<CyNode>) transitions.clone(); // Not sure if shallow copy is enough
-			HashMap<String, Integer> newTimes = (HashMap<String, Integer>) times.clone();
-			int count = times.get(petriNet.getDefaultNodeTable().getRow(trans.getSUID()).get("name", String.class));
-			// Lower count in newTimes or remove trans from newTransitions
-			if (count > 1){
-				newTimes.put(petriNet.getDefaultNodeTable().getRow(trans.getSUID()).get("name", String.class), count-1);
-			}
-			else {
-				newTransitions.remove(trans);
-			}
-			// Copy tokens for recursion
-			HashMap<String, Integer> newTokens = (HashMap<String, Integer>) tokens.clone();
-			// Add tokens for outgoing edges
-			for (CyEdge e : petriNet.getAdjacentEdgeIterable(trans, CyEdge.Type.OUTGOING)) {
-				newTokens.put(petriNet.getDefaultNodeTable().getRow(e.getTarget().getSUID()).get("name", String.class),
-						tokens.get(petriNet.getDefaultNodeTable().getRow(e.getTarget().getSUID()).get("name", String.class)) +
-						petriNet.getDefaultEdgeTable().getRow(e.getSUID()).get("weight", Integer.class));
-			}
-			ArrayList<String> newUsed = (ArrayList<String>) used.clone();
-			newUsed.add(petriNet.getDefaultNodeTable().getRow(trans.getSUID()).get("name", String.class));
-			if (newTransitions.isEmpty()) { // Recursion is done, leaf has been reached
-				realize.add(newUsed.toString());
-			}
-			else { // Recursion Step, Fix this to search only for one.
-				namingsense(newTransitions, newUsed, newTimes, newTokens, realize, all);
-			}
-		}
-		return;
-	}
 }
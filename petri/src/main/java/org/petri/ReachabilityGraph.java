@@ -0,0 +1,189 @@
+package org.petri;
+
+import java.util.Arrays;
+
+/**
+ * Reachability graph of a Petri net, built breadth-first from an initial marking.
+ * Markings are kept in a MarkingStore and numbered in the order they are found, so the
+ * markings still to be expanded are exactly those numbered from the expanded count on
+ * and no separate queue is needed. Edges are stored per expanded marking as target and
+ * transition packed into one long. The graph is built in batches by expand(), so it can
+ * be cancelled in between, and stops growing at a budget of markings.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class ReachabilityGraph {
+
+	private final CompiledNet net;
+	private final int budget;
+	private final MarkingStore markings;
+	private final MarkingStore.Pages edges = new MarkingStore.Pages();	// Target in the upper, transition in the lower 32 bits
+	private final MarkingStore.Pages edgeStart = new MarkingStore.Pages();	// First edge of every expanded marking
+	private long edgeCount;
+	private int expanded;	// Markings expanded so far
+	private boolean truncated;	// A marking was dropped because of the budget
+	private final boolean[] enabled;	// Transitions enabled in some expanded marking
+	private int[] deadlocks = new int[16];	// Expanded markings without enabled transitions
+	private int deadlockCount;
+
+	/**
+	 * Constructor
+	 * @param net compiled Petri net
+	 * @param initial initial marking, e.g. from the initial tokens column
+	 * @param budget maximal number of markings, at least 1
+	 */
+	public ReachabilityGraph(CompiledNet net, int[] initial, int budget) {
+		this.net = net;
+		this.budget = budget;
+		this.markings = new MarkingStore(net.placeCount);
+		this.enabled = new boolean[net.transitionCount];
+		markings.add(initial);
+		edgeStart.set(0, 0);
+	}
+
+	/**
+	 * Expands markings in breadth-first order. Once the budget is reached, successors not
+	 * found before are dropped and the expansion ends with the current marking.
+	 * @param count maximal number of markings to expand
+	 * @return true, if markings remain to be expanded
+	 */
+	public boolean expand(int count) {
+		int[] m = new int[net.placeCount];
+		int[] next = new int[net.placeCount];
+		for (int i=0; i<count && hasNext(); i++) {
+			markings.get(expanded, m);
+			boolean dead = true;
+			for (int t=0; t<net.transitionCount; t++) {
+				if (!net.isEnabled(t, m)) {
+					continue;
+				}
+				dead = false;
+				enabled[t] = true;
+				System.arraycopy(m, 0, next, 0, m.length);
+				net.consume(t, next);
+				net.produce(t, next);
+				int target = markings.size() < budget ? markings.add(next) : markings.find(next);
+				if (target < 0) {
+					truncated = true;
+					continue;
+				}
+				edges.set(edgeCount++, (long) target << 32 | t);
+			}
+			if (dead) {
+				if (deadlockCount == deadlocks.length) {
+					deadlocks = Arrays.copyOf(deadlocks, deadlockCount * 2);
+				}
+				deadlocks[deadlockCount++] = expanded;
+			}
+			expanded++;
+			edgeStart.set(expanded, edgeCount);
+		}
+		return hasNext();
+	}
+
+	/**
+	 * @return true, if markings remain to be expanded and the budget was not exceeded
+	 */
+	public boolean hasNext() {
+		return expanded < markings.size() && !truncated;
+	}
+
+	/**
+	 * @return true, if all reachable markings were expanded, i.e. the results are exact
+	 */
+	public boolean isComplete() {
+		return expanded == markings.size() && !truncated;
+	}
+
+	/**
+	 * @return true, if the budget stopped the expansion
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * @return number of markings found
+	 */
+	public int getStateCount() {
+		return markings.size();
+	}
+
+	/**
+	 * @return number of markings expanded
+	 */
+	public int getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 * @return number of edges between markings
+	 */
+	public long getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * @return bytes allocated for markings and edges
+	 */
+	public long bytes() {
+		return markings.bytes() + edges.bytes() + edgeStart.bytes();
+	}
+
+	/**
+	 * @param id number of a marking
+	 * @return tokens of every place in the marking
+	 */
+	public int[] getMarking(int id) {
+		int[] m = new int[net.placeCount];
+		markings.get(id, m);
+		return m;
+	}
+
+	/**
+	 * @param id number of an expanded marking
+	 * @return numbers of the markings reached by firing one transition
+	 */
+	public int[] getSuccessors(int id) {
+		long from = edgeStart.get(id);
+		int[] successors = new int[(int) (edgeStart.get(id + 1) - from)];
+		for (int e=0; e<successors.length; e++) {
+			successors[e] = (int) (edges.get(from + e) >>> 32);
+		}
+		return successors;
+	}
+
+	/**
+	 * @param id number of an expanded marking
+	 * @return transitions leading to the successors, in the same order
+	 */
+	public int[] getFiredTransitions(int id) {
+		long from = edgeStart.get(id);
+		int[] transitions = new int[(int) (edgeStart.get(id + 1) - from)];
+		for (int e=0; e<transitions.length; e++) {
+			transitions[e] = (int) edges.get(from + e);
+		}
+		return transitions;
+	}
+
+	/**
+	 * @return numbers of the expanded markings without enabled transitions
+	 */
+	public int[] getDeadlocks() {
+		return Arrays.copyOf(deadlocks, deadlockCount);
+	}
+
+	/**
+	 * @return transitions not enabled in any expanded marking, i.e. dead if the graph is complete
+	 */
+	public int[] getDeadTransitions() {
+		int count = 0;
+		int[] dead = new int[enabled.length];
+		for (int t=0; t<enabled.length; t++) {
+			if (!enabled[t]) {
+				dead[count++] = t;
+			}
+		}
+		return Arrays.copyOf(dead, count);
+	}
+}
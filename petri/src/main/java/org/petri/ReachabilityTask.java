@@ -0,0 +1,157 @@
+package org.petri;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.swing.JFrame;
+import javax.swing.JOptionPane;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * Task building the reachability graph from the initial tokens in the background and
+ * reporting its size, deadlocks and dead transitions. With one thread the graph is
+ * built with its edges, with more it is explored in parallel without storing them.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class ReachabilityTask extends AbstractTask {
+	static final int BATCH = 10000;	// Markings expanded between checks for cancellation
+	static final int MAX_SHOWN = 10;	// Deadlocks listed in the result dialog
+
+	private CyNetwork petriNet;
+	private PetriUtils petriUtils;
+	private int budget;
+	private int threads;
+	private volatile ParallelExplorer explorer;	// Cancelled within a level, not only between levels, null with one thread
+
+	/**
+	 * Constructor
+	 * @param petriNet Petri net to be analysed
+	 * @param petriUtils Utilities for Petri Net
+	 * @param budget maximal number of markings
+	 * @param threads number of threads exploring the markings
+	 */
+	public ReachabilityTask(CyNetwork petriNet, PetriUtils petriUtils, int budget, int threads) {
+		this.petriNet = petriNet;
+		this.petriUtils = petriUtils;
+		this.budget = budget;
+		this.threads = threads;
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+		if (explorer != null) {
+			explorer.cancel();
+		}
+	}
+
+	public void run(TaskMonitor taskMonitor) throws Exception {
+		taskMonitor.setTitle("Building reachability graph");
+		CyNode[] cyTransitionArray = petriUtils.getTransitions();
+		CyNode[] cyPlaceArray = petriUtils.getPlaces();
+		CompiledNet net = new CompiledNet(petriNet, cyTransitionArray, cyPlaceArray);
+		int[] initial = new int[cyPlaceArray.length];
+		for (int p=0; p<cyPlaceArray.length; p++) {
+			Integer tokens = petriNet.getDefaultNodeTable().getRow(cyPlaceArray[p].getSUID()).get("initial tokens", Integer.class);
+			initial[p] = tokens == null ? 0 : tokens;
+		}
+		long start = System.currentTimeMillis();
+		StringBuilder output = new StringBuilder();
+		boolean complete;
+		int deadlockCount;
+		ArrayList<int[]> shown = new ArrayList<int[]>();	// Deadlocks listed in the dialog
+		int[] dead;
+		if (threads == 1) {	// Sequentially, storing the edges of the graph
+			ReachabilityGraph graph = new ReachabilityGraph(net, initial, budget);
+			while (graph.expand(BATCH)) {
+				if (cancelled) {
+					return;
+				}
+				taskMonitor.setProgress((double) graph.getStateCount() / budget);
+				taskMonitor.setStatusMessage(graph.getStateCount() + " markings, " + graph.getEdgeCount() + " edges, "
+						+ (graph.bytes() >> 20) + " MB");
+			}
+			if (graph.isTruncated()) {
+				output.append("Incomplete, stopped at the budget of " + budget + " markings\n");
+			}
+			output.append(graph.getStateCount() + " markings, " + graph.getEdgeCount() + " edges\n");
+			complete = graph.isComplete();
+			int[] deadlocks = graph.getDeadlocks();
+			deadlockCount = deadlocks.length;
+			for (int d=0; d<deadlocks.length && d<MAX_SHOWN; d++) {
+				shown.add(graph.getMarking(deadlocks[d]));
+			}
+			dead = graph.getDeadTransitions();
+		}
+		else {	// In parallel, counting the edges only
+			ParallelExplorer graph = new ParallelExplorer(net, initial, budget);
+			explorer = graph;
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				while (graph.expand(pool)) {	// One breadth-first level at a time
+					if (cancelled) {
+						return;
+					}
+					taskMonitor.setProgress((double) graph.getStateCount() / budget);
+					taskMonitor.setStatusMessage(graph.getStateCount() + " markings, " + graph.getEdgeCount() + " edges, depth "
+							+ graph.getDepth() + ", " + (long) graph.getStatesPerSecond() + " markings/s, " + (graph.bytes() >> 20) + " MB");
+				}
+			}
+			finally {
+				pool.shutdown();
+			}
+			if (graph.isTruncated()) {
+				output.append("Incomplete, stopped at the budget of " + budget + " markings\n");
+			}
+			output.append(graph.getStateCount() + " markings, " + graph.getEdgeCount() + " edges, depth " + graph.getDepth() + "\n");
+			output.append((long) graph.getStatesPerSecond() + " markings/s on " + threads + " threads\n");
+			complete = graph.isComplete();
+			long[] deadlocks = graph.getDeadlocks();
+			deadlockCount = deadlocks.length;
+			for (int d=0; d<deadlocks.length && d<MAX_SHOWN; d++) {
+				shown.add(graph.getMarking(deadlocks[d]));
+			}
+			dead = graph.getDeadTransitions();
+		}
+		if (cancelled) {
+			return;
+		}
+		taskMonitor.setProgress(1.0);
+		taskMonitor.setStatusMessage("Finished in " + (System.currentTimeMillis() - start) + " ms");
+		output.append(deadlockCount + " deadlocks" + (deadlockCount > 0 ? ":\n" : "\n"));
+		for (int[] deadlock : shown) {
+			output.append(describe(deadlock, cyPlaceArray)).append("\n");
+		}
+		if (deadlockCount > MAX_SHOWN) {
+			output.append("...\n");
+		}
+		output.append(dead.length + (complete ? " dead transitions" : " transitions never enabled so far"));
+		for (int i=0; i<dead.length; i++) {
+			output.append(i == 0 ? ": " : ", ").append(name(cyTransitionArray[dead[i]]));
+		}
+		JFrame f = new JFrame("Reachability Graph");
+		JOptionPane.showMessageDialog(f, output.toString());
+	}
+
+	/**
+	 * @return marked places of a marking, e.g. "P1: 2, P3: 1", or "empty"
+	 */
+	private String describe(int[] marking, CyNode[] cyPlaceArray) {
+		StringBuilder s = new StringBuilder();
+		for (int p=0; p<marking.length; p++) {
+			if (marking[p] != 0) {
+				s.append(s.length() == 0 ? "" : ", ").append(name(cyPlaceArray[p])).append(": ").append(marking[p]);
+			}
+		}
+		return s.length() == 0 ? "empty" : s.toString();
+	}
+
+	private String name(CyNode node) {
+		return petriNet.getDefaultNodeTable().getRow(node.getSUID()).get("name", String.class);
+	}
+}
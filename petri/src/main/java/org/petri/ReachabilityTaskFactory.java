@@ -0,0 +1,35 @@
+package org.petri;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.AbstractTaskFactory;
+import org.cytoscape.work.TaskIterator;
+
+/**
+ * Factory for ReachabilityTasks
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class ReachabilityTaskFactory extends AbstractTaskFactory {
+	private final CyNetwork petriNet;
+	private final PetriUtils petriUtils;
+	private final int budget;
+	private final int threads;
+
+	/**
+	 * Constructor
+	 * @param petriNet Petri net to be analysed
+	 * @param petriUtils Utilities for Petri Net
+	 * @param budget maximal number of markings
+	 * @param threads number of threads exploring the markings
+	 */
+	public ReachabilityTaskFactory(final CyNetwork petriNet, final PetriUtils petriUtils, int budget, int threads) {
+		this.petriNet = petriNet;
+		this.petriUtils = petriUtils;
+		this.budget = budget;
+		this.threads = threads;
+	}
+
+	public TaskIterator createTaskIterator(){
+		return new TaskIterator(new ReachabilityTask(petriNet, petriUtils, budget, threads));
+	}
+}
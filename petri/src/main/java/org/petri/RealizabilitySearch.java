@@ -0,0 +1,656 @@
+package org.petri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Searches the orders in which the transitions of a T-invariant can fire from the current
+ * marking, each as often as its coefficient says. Only the places adjacent to these
+ * transitions matter, so a state of the search is the vector of remaining firings together
+ * with the marking of those places. States are bit-packed into long[] keys, every field
+ * only as wide as its largest possible value. The state after a prefix does not depend on
+ * the order of the prefix, so a state from which the invariant can not be completed is
+ * remembered and never expanded again. Searching for one order thus expands every
+ * distinct state at most once.
+ * Firing uses the current marking and undoes it on backtracking, nothing is copied.
+ * Transitions not sharing a place one of them consumes from are independent, orders
+ * differing only in the order of adjacent independent transitions are equivalent.
+ * A single order is found by one depth-first search, which only fires the transitions of
+ * a stubborn set and tries the most productive ones first. Instead of all orders, one
+ * order per class of equivalent orders is enumerated using persistent and sleep sets, by
+ * one thread per first transition sharing the dead states. The classes can be expanded into all their
+ * orders afterwards. Searches can be cancelled.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class RealizabilitySearch {
+
+	private final String[] names;	// Names of the invariant's transitions
+	private final int[] times;	// Coefficient of every transition
+	private final int total;	// Length of a complete firing order
+	private final int[][] inPlace;	// Input places per transition, as index among the affected places
+	private final int[][] inWeight;
+	private final int[][] outPlace;
+	private final int[][] outWeight;
+	private final int[] initialMarking;	// Marking of the affected places
+	private final int[] fieldWord;	// Word and shift of every field of a packed state, counts first, then marking
+	private final int[] fieldShift;
+	private final int words;
+	private final int[] natural;	// Transitions in the order of the invariant
+	private final int[] heuristic;	// Transitions by descending score, see findOne()
+	private final int[][] consumers;	// Transitions consuming from every affected place
+	private final int[][] producers;	// Transitions producing on every affected place
+	private final long[][] dependent;	// Bit set of the transitions every transition depends on
+	private final int sleepWords;	// Words of a bit set of transitions
+	private final Set<State> dead = Collections.newSetFromMap(new ConcurrentHashMap<State, Boolean>());	// States the invariant can not be completed from
+	private final AtomicLong expanded = new AtomicLong();	// Number of states expanded
+	private volatile boolean cancelled;
+
+	/**
+	 * Packed state, i.e. remaining firings and marking
+	 */
+	private static final class State {
+		private final long[] bits;
+		private final int hash;
+
+		State(long[] bits) {
+			this.bits = bits;
+			this.hash = Arrays.hashCode(bits);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof State && Arrays.equals(bits, ((State) o).bits);
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param net compiled Petri net, its marking is the start of the search
+	 * @param transitions indices of the invariant's transitions within net, without duplicates
+	 * @param times how often each of these transitions has to fire
+	 * @param names names of these transitions, used for the resulting orders
+	 */
+	public RealizabilitySearch(CompiledNet net, int[] transitions, int[] times, String[] names) {
+		this.names = names;
+		this.times = times;
+		int sum = 0;
+		for (int c : times) {
+			sum += c;
+		}
+		this.total = sum;
+		// Number the affected places, merging parallel arcs to the same place
+		int[] local = new int[net.placeCount];
+		Arrays.fill(local, -1);
+		ArrayList<Integer> affected = new ArrayList<Integer>();
+		inPlace = new int[transitions.length][];
+		inWeight = new int[transitions.length][];
+		outPlace = new int[transitions.length][];
+		outWeight = new int[transitions.length][];
+		for (int i=0; i<transitions.length; i++) {
+			int t = transitions[i];
+			int[][] in = merge(net.prePlace, net.preWeight, net.preStart[t], net.preStart[t + 1], local, affected);
+			int[][] out = merge(net.postPlace, net.postWeight, net.postStart[t], net.postStart[t + 1], local, affected);
+			inPlace[i] = in[0];
+			inWeight[i] = in[1];
+			outPlace[i] = out[0];
+			outWeight[i] = out[1];
+		}
+		initialMarking = new int[affected.size()];
+		long[] bound = new long[transitions.length + affected.size()];	// Largest value of every field
+		for (int p=0; p<initialMarking.length; p++) {
+			initialMarking[p] = net.marking[affected.get(p)];
+			bound[transitions.length + p] = initialMarking[p];
+		}
+		for (int i=0; i<transitions.length; i++) {
+			bound[i] = times[i];
+			for (int a=0; a<outPlace[i].length; a++) {
+				bound[transitions.length + outPlace[i][a]] += (long) times[i] * outWeight[i][a];
+			}
+		}
+		fieldWord = new int[bound.length];
+		fieldShift = new int[bound.length];
+		int word = 0;
+		int shift = 0;
+		for (int f=0; f<bound.length; f++) {
+			if (bound[f] > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Marking may exceed " + Integer.MAX_VALUE + " tokens");
+			}
+			int bits = 64 - Long.numberOfLeadingZeros(bound[f]);
+			if (shift + bits > 64) {
+				word++;
+				shift = 0;
+			}
+			fieldWord[f] = word;
+			fieldShift[f] = shift;
+			shift += bits;
+		}
+		words = word + 1;
+		// Score: tokens produced on places some transition of the invariant consumes from, minus tokens consumed
+		boolean[] consumed = new boolean[affected.size()];
+		for (int i=0; i<transitions.length; i++) {
+			for (int p : inPlace[i]) {
+				consumed[p] = true;
+			}
+		}
+		final long[] score = new long[transitions.length];
+		ArrayList<Integer> sorted = new ArrayList<Integer>();
+		for (int i=0; i<transitions.length; i++) {
+			for (int a=0; a<outPlace[i].length; a++) {
+				if (consumed[outPlace[i][a]]) {
+					score[i] += outWeight[i][a];
+				}
+			}
+			for (int a=0; a<inPlace[i].length; a++) {
+				score[i] -= inWeight[i][a];
+			}
+			sorted.add(i);
+		}
+		Collections.sort(sorted, new Comparator<Integer>() {	// Stable, ties keep the order of the invariant
+			public int compare(Integer a, Integer b) {
+				return Long.compare(score[b], score[a]);
+			}
+		});
+		natural = new int[transitions.length];
+		heuristic = new int[transitions.length];
+		for (int i=0; i<transitions.length; i++) {
+			natural[i] = i;
+			heuristic[i] = sorted.get(i);
+		}
+		consumers = adjacent(inPlace, affected.size());
+		producers = adjacent(outPlace, affected.size());
+		// Two transitions are independent if neither consumes from a place the other one touches
+		sleepWords = (transitions.length + 63) >>> 6;
+		dependent = new long[transitions.length][sleepWords];
+		for (int i=0; i<transitions.length; i++) {
+			dependent[i][i >>> 6] |= 1L << i;
+			for (int p : inPlace[i]) {
+				for (int j : consumers[p]) {
+					dependent[i][j >>> 6] |= 1L << j;
+				}
+				for (int j : producers[p]) {
+					dependent[i][j >>> 6] |= 1L << j;
+					dependent[j][i >>> 6] |= 1L << i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Inverts the arcs of the transitions
+	 * @param arcPlace places of the arcs of every transition
+	 * @param placeCount number of affected places
+	 * @return transitions with an arc to every place
+	 */
+	private static int[][] adjacent(int[][] arcPlace, int placeCount) {
+		int[] count = new int[placeCount];
+		for (int[] places : arcPlace) {
+			for (int p : places) {
+				count[p]++;
+			}
+		}
+		int[][] adjacent = new int[placeCount][];
+		for (int p=0; p<placeCount; p++) {
+			adjacent[p] = new int[count[p]];
+			count[p] = 0;
+		}
+		for (int i=0; i<arcPlace.length; i++) {
+			for (int p : arcPlace[i]) {
+				adjacent[p][count[p]++] = i;
+			}
+		}
+		return adjacent;
+	}
+
+	/**
+	 * Collects the arcs of one transition per place, numbering new places on the way
+	 * @return places and summed weights
+	 */
+	private static int[][] merge(int[] arcPlace, int[] arcWeight, int from, int to, int[] local, ArrayList<Integer> affected) {
+		int[] places = new int[to - from];
+		int[] weights = new int[to - from];
+		int count = 0;
+		for (int a=from; a<to; a++) {
+			int p = arcPlace[a];
+			if (local[p] < 0) {
+				local[p] = affected.size();
+				affected.add(p);
+			}
+			int k = 0;
+			while (k < count && places[k] != local[p]) {
+				k++;
+			}
+			if (k == count) {
+				places[count++] = local[p];
+			}
+			weights[k] += arcWeight[a];
+		}
+		return new int[][] {Arrays.copyOf(places, count), Arrays.copyOf(weights, count)};
+	}
+
+	/**
+	 * Receives firing orders as soon as they are found, possibly from several threads at once
+	 */
+	public interface Listener {
+		void found(String order);
+	}
+
+	/**
+	 * Depth-first search for a single firing order. Every state only fires the enabled
+	 * transitions of a stubborn set, see stubborn(), tried in the order of the heuristic,
+	 * i.e. those producing most tokens for the invariant first.
+	 * @return firing order as list of transition names, e.g. "[T1, T2, T1]", null if there is none or the search was cancelled
+	 */
+	public String findOne() {
+		ArrayList<int[]> realize = new ArrayList<int[]>();
+		search(times.clone(), initialMarking.clone(), new int[total], new long[sleepWords], 0, heuristic, false, realize, null);
+		return realize.isEmpty() ? null : describe(realize.get(0));
+	}
+
+	/**
+	 * Enumerates one firing order of every class of equivalent orders, i.e. of orders that
+	 * only differ in the order of adjacent independent transitions. Every state only fires
+	 * the enabled transitions of a persistent set, see stubborn(), and leaves out those in
+	 * the sleep set, i.e. where swapping it with its predecessors leads to an
+	 * order found before. Every transition fired at the start is the root of a branch
+	 * searched by its own thread, all sharing the known dead states.
+	 * @param parallelism number of threads
+	 * @param listener receives the order of every class as soon as it is found, may be null
+	 * @return one firing order per class, in the order of their first transitions, as transition indices
+	 * @throws InterruptedException if interrupted while waiting for the branches
+	 * @throws ExecutionException if a branch failed
+	 */
+	public ArrayList<int[]> enumerateClasses(int parallelism, final Listener listener) throws InterruptedException, ExecutionException {
+		ArrayList<Future<ArrayList<int[]>>> branches = new ArrayList<Future<ArrayList<int[]>>>();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, parallelism));
+		try {
+			final long[] tried = new long[sleepWords];	// Transitions of earlier branches
+			int[] firsts = new int[times.length];
+			int count = stubborn(times, initialMarking, tried, natural, firsts, new boolean[times.length], new int[times.length]);
+			expanded.incrementAndGet();
+			for (int k=0; k<count; k++) {
+				final int first = firsts[k];
+				int i = first;
+				final long[] sleep = new long[sleepWords];
+				for (int w=0; w<sleepWords; w++) {
+					sleep[w] = tried[w] & ~dependent[i][w];
+				}
+				tried[i >>> 6] |= 1L << i;
+				branches.add(pool.submit(new Callable<ArrayList<int[]>>() {
+					public ArrayList<int[]> call() {
+						int[] remaining = times.clone();
+						int[] marking = initialMarking.clone();
+						int[] order = new int[total];
+						fire(first, marking, remaining);
+						order[0] = first;
+						ArrayList<int[]> realize = new ArrayList<int[]>();
+						search(remaining, marking, order, sleep, 1, natural, true, realize, listener);
+						return realize;
+					}
+				}));
+			}
+			ArrayList<int[]> realize = new ArrayList<int[]>();
+			for (Future<ArrayList<int[]>> branch : branches) {
+				realize.addAll(branch.get());
+			}
+			return realize;
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Expands a class of equivalent firing orders, i.e. lists every order of its transitions
+	 * that keeps dependent transitions in the order of the representative
+	 * @param representative firing order of the class, as transition indices
+	 * @param limit maximal number of orders to list
+	 * @return firing orders as lists of transition names, the representative first
+	 */
+	public ArrayList<String> expand(int[] representative, int limit) {
+		int length = representative.length;
+		int[][] successors = new int[length][];	// Later positions that have to stay behind each position
+		int[] pending = new int[length];	// Number of earlier positions still to be placed
+		int[] buffer = new int[length];
+		for (int i=0; i<length; i++) {
+			int count = 0;
+			for (int j=i + 1; j<length; j++) {
+				if (dependent(representative[i], representative[j])) {
+					buffer[count++] = j;
+					pending[j]++;
+				}
+			}
+			successors[i] = Arrays.copyOf(buffer, count);
+		}
+		ArrayList<String> orders = new ArrayList<String>();
+		int[] order = new int[length];
+		int[] chosen = new int[length + 1];	// Position placed at every depth
+		boolean[] placed = new boolean[length];
+		int depth = 0;
+		chosen[0] = -1;
+		while (depth >= 0 && orders.size() < limit && !cancelled) {
+			if (depth == length) {
+				orders.add(describe(order));
+				depth--;
+			}
+			else {
+				if (chosen[depth] >= 0) {	// Take back the position placed before
+					placed[chosen[depth]] = false;
+					for (int j : successors[chosen[depth]]) {
+						pending[j]++;
+					}
+				}
+				int k = chosen[depth] + 1;
+				while (k < length && (placed[k] || pending[k] > 0)) {
+					k++;
+				}
+				if (k == length) {
+					depth--;
+					continue;
+				}
+				chosen[depth] = k;
+				placed[k] = true;
+				for (int j : successors[k]) {
+					pending[j]--;
+				}
+				order[depth++] = representative[k];
+				chosen[depth] = -1;
+			}
+		}
+		return orders;
+	}
+
+	/**
+	 * Iterative depth-first search below a state
+	 * @param remaining remaining firings, changed during the search and restored afterwards
+	 * @param marking marking of the affected places, changed during the search and restored afterwards
+	 * @param order transitions fired so far, up to depth from
+	 * @param sleep sleep set of the state, only used if all is true
+	 * @param from depth of the state, i.e. number of transitions fired so far
+	 * @param priority order in which transitions are tried
+	 * @param all find one order per class using persistent and sleep sets (true) or stop after the first one using stubborn sets (false)
+	 * @param realize receives the firing orders
+	 * @param listener receives the firing orders as well, may be null
+	 * @return true, if an order was completed below the state
+	 */
+	private boolean search(int[] remaining, int[] marking, int[] order, long[] sleep, int from, int[] priority, boolean all,
+			ArrayList<int[]> realize, Listener listener) {
+		int n = times.length;
+		int[][] candidates = new int[total + 1][n];	// Transitions to fire at every depth, in the order they are tried
+		int[] candidateCount = new int[total + 1];
+		int[] next = new int[total + 1];	// Position in candidates of the next transition to try at every depth
+		long[][] sleeps = new long[total + 1][];	// Sleep set at every depth
+		long[][] tried = new long[total + 1][sleepWords];	// Sleep set and the transitions tried so far at every depth
+		boolean[] completed = new boolean[total + 1];	// An order was completed below the state at every depth
+		boolean[] known = new boolean[total + 1];	// The state at every depth is a known dead end
+		boolean[] member = new boolean[n];	// Scratch space for stubborn()
+		int[] work = new int[n];
+		for (int d=from; d<=total; d++) {
+			sleeps[d] = new long[sleepWords];
+		}
+		System.arraycopy(sleep, 0, sleeps[from], 0, sleepWords);
+		int depth = from;
+		boolean entering = true;
+		while (depth >= from) {
+			if (cancelled) {	// Unfinished states must not be taken for dead ends
+				return !realize.isEmpty();
+			}
+			if (entering) {
+				entering = false;
+				next[depth] = 0;
+				candidateCount[depth] = 0;
+				completed[depth] = false;
+				known[depth] = false;
+				if (depth == total) {
+					int[] found = order.clone();
+					realize.add(found);
+					if (listener != null) {
+						listener.found(describe(found));
+					}
+					completed[depth] = true;
+					if (!all) {
+						return true;
+					}
+				}
+				else if (isDead(remaining, marking, all ? sleeps[depth] : null)) {
+					known[depth] = true;	// Nothing to try, backtrack
+				}
+				else {
+					expanded.incrementAndGet();
+					candidateCount[depth] = stubborn(remaining, marking, all ? sleeps[depth] : null, priority, candidates[depth], member, work);
+					if (all) {
+						System.arraycopy(sleeps[depth], 0, tried[depth], 0, sleepWords);
+					}
+				}
+			}
+			if (next[depth] < candidateCount[depth]) {
+				int i = candidates[depth][next[depth]++];
+				if (all) {	// Transitions tried before and independent of i stay asleep
+					for (int w=0; w<sleepWords; w++) {
+						sleeps[depth + 1][w] = tried[depth][w] & ~dependent[i][w];
+					}
+					tried[depth][i >>> 6] |= 1L << i;
+				}
+				fire(i, marking, remaining);
+				order[depth++] = i;
+				entering = true;
+				continue;
+			}
+			// All transitions tried, go back to the previous state
+			if (!completed[depth] && !known[depth] && depth < total) {
+				dead.add(pack(remaining, marking, all ? sleeps[depth] : null));
+			}
+			if (depth > from) {
+				completed[depth - 1] |= completed[depth];
+				unfire(order[depth - 1], marking, remaining);
+			}
+			depth--;
+		}
+		return completed[from];
+	}
+
+	/**
+	 * A state with a sleep set is dead if no order is completed from it without firing the
+	 * sleeping transitions first. A state dead without sleep set is dead for any sleep set.
+	 */
+	private boolean isDead(int[] remaining, int[] marking, long[] sleep) {
+		return dead.contains(pack(remaining, marking, null))
+				|| (sleep != null && !isEmpty(sleep) && dead.contains(pack(remaining, marking, sleep)));
+	}
+
+	private static boolean isEmpty(long[] set) {
+		for (long w : set) {
+			if (w != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Computes a stubborn set of the transitions that still have to fire, starting from the
+	 * first enabled one in priority order that is not asleep. With an enabled transition it
+	 * contains all that consume from its input places, with a disabled one all that produce
+	 * on one of its insufficiently marked input places. Transitions outside the set can
+	 * neither enable nor disable those inside, so firing only the enabled ones still reaches
+	 * every dead end, in particular the marking where the invariant is complete.
+	 * With a sleep set, an enabled transition also brings all it depends on, i.e. those producing
+	 * on its input places and consuming from its output places, so the set is persistent: the enabled transitions inside are independent of every
+	 * transition outside, and every order has an equivalent one starting inside the set.
+	 * @param sleep sleep set, null for none
+	 * @param result receives the enabled transitions of the set that are not asleep, in priority order
+	 * @param member scratch space of length of the invariant
+	 * @param work scratch space of length of the invariant
+	 * @return number of transitions in result
+	 */
+	private int stubborn(int[] remaining, int[] marking, long[] sleep, int[] priority, int[] result, boolean[] member, int[] work) {
+		Arrays.fill(member, false);
+		int size = 0;
+		for (int k=0; k<priority.length && size == 0; k++) {
+			int i = priority[k];
+			if (remaining[i] > 0 && !asleep(sleep, i) && enabled(i, marking)) {
+				member[i] = true;
+				work[size++] = i;
+			}
+		}
+		while (size > 0) {
+			int i = work[--size];
+			if (enabled(i, marking)) {
+				for (int p : inPlace[i]) {
+					size = include(consumers[p], remaining, member, work, size);
+					if (sleep != null) {
+						size = include(producers[p], remaining, member, work, size);
+					}
+				}
+				if (sleep != null) {
+					for (int p : outPlace[i]) {
+						size = include(consumers[p], remaining, member, work, size);
+					}
+				}
+				continue;
+			}
+			int[] add = null;	// Producers of the insufficiently marked input place with fewest of them
+			for (int a=0; a<inPlace[i].length; a++) {
+				int p = inPlace[i][a];
+				if (marking[p] < inWeight[i][a] && (add == null || producers[p].length < add.length)) {
+					add = producers[p];
+				}
+			}
+			size = include(add, remaining, member, work, size);
+		}
+		int count = 0;
+		for (int i : priority) {
+			if (member[i] && !asleep(sleep, i) && enabled(i, marking)) {
+				result[count++] = i;
+			}
+		}
+		return count;
+	}
+
+	private static boolean asleep(long[] sleep, int i) {
+		return sleep != null && (sleep[i >>> 6] & 1L << i) != 0;
+	}
+
+	/**
+	 * Adds the transitions that still have to fire to the stubborn set and its work list
+	 * @return new size of the work list
+	 */
+	private static int include(int[] transitions, int[] remaining, boolean[] member, int[] work, int size) {
+		for (int u : transitions) {
+			if (remaining[u] > 0 && !member[u]) {
+				member[u] = true;
+				work[size++] = u;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return true, if swapping two adjacent firings of the transitions may change the outcome
+	 */
+	private boolean dependent(int i, int j) {
+		return (dependent[i][j >>> 6] & 1L << j) != 0;
+	}
+
+	private boolean enabled(int i, int[] marking) {
+		for (int a=0; a<inPlace[i].length; a++) {
+			if (marking[inPlace[i][a]] < inWeight[i][a]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void fire(int i, int[] marking, int[] remaining) {
+		for (int a=0; a<inPlace[i].length; a++) {
+			marking[inPlace[i][a]] -= inWeight[i][a];
+		}
+		for (int a=0; a<outPlace[i].length; a++) {
+			marking[outPlace[i][a]] += outWeight[i][a];
+		}
+		remaining[i]--;
+	}
+
+	private void unfire(int i, int[] marking, int[] remaining) {
+		for (int a=0; a<outPlace[i].length; a++) {
+			marking[outPlace[i][a]] -= outWeight[i][a];
+		}
+		for (int a=0; a<inPlace[i].length; a++) {
+			marking[inPlace[i][a]] += inWeight[i][a];
+		}
+		remaining[i]++;
+	}
+
+	/**
+	 * Packs remaining firings, marking and sleep set into a key
+	 * @param sleep sleep set, null for none
+	 */
+	private State pack(int[] remaining, int[] marking, long[] sleep) {
+		if (sleep != null && isEmpty(sleep)) {
+			sleep = null;
+		}
+		long[] bits = new long[words + (sleep == null ? 0 : sleepWords)];
+		for (int f=0; f<remaining.length; f++) {
+			bits[fieldWord[f]] |= (long) remaining[f] << fieldShift[f];
+		}
+		for (int p=0; p<marking.length; p++) {
+			int f = remaining.length + p;
+			bits[fieldWord[f]] |= (long) marking[p] << fieldShift[f];
+		}
+		if (sleep != null) {
+			System.arraycopy(sleep, 0, bits, words, sleepWords);
+		}
+		return new State(bits);
+	}
+
+	/**
+	 * @param order firing order as transition indices
+	 * @return firing order as list of transition names, e.g. "[T1, T2, T1]"
+	 */
+	public String describe(int[] order) {
+		StringBuilder s = new StringBuilder("[");
+		for (int d=0; d<order.length; d++) {
+			if (d > 0) {
+				s.append(", ");
+			}
+			s.append(names[order[d]]);
+		}
+		return s.append("]").toString();
+	}
+
+	/**
+	 * Stops the search, running searches return the orders found so far
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return number of states expanded so far
+	 */
+	public long getExpanded() {
+		return expanded.get();
+	}
+
+	/**
+	 * @return number of states known to be dead ends
+	 */
+	public int getDeadStates() {
+		return dead.size();
+	}
+}
@@ -0,0 +1,284 @@
+package org.petri;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * Task for firing a Petri net repeatedly in the background,
+ * either with the untimed firing rules or stochastically.
+ * The view is only refreshed every REFRESH_STEPS steps or
+ * every REFRESH_MILLIS milliseconds, whichever comes first.
+ * Synchronous runs without trace, and without stop conditions other
+ * than deadlock and time, fire the connected components of the net in
+ * parallel, in rounds.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class SimulateTask extends AbstractTask {
+
+	static final int REFRESH_STEPS = 10000;
+	static final long REFRESH_MILLIS = 1000;
+	static final int CHECKPOINT_INTERVAL = 10000;
+	static final int ROUND_STEPS = 256;	// Steps the components fire between merging their markings
+	private CyNetwork petriNet;
+	private PetriUtils petriUtils;
+	private CyNetworkViewManager cnvm;
+	private int times;
+	private boolean firingMode;
+	private boolean random;
+	private boolean stochastic;
+	private boolean tauLeaping;
+	private File trace;
+	private String stopConditions;
+
+	/**
+	 * Constructor
+	 * @param petriNet Petri net to be fired
+	 * @param petriUtils Utilities for Petri Net
+	 * @param cnvm Used to refresh the view during the run
+	 * @param times how often to fire
+	 * @param firingMode synchronous (true) or asynchronous (false) firing
+	 * @param random randomize firing order
+	 * @param stochastic stochastic simulation using the rate column, firingMode and random are ignored
+	 * @param tauLeaping use tau-leaping for stochastic simulation
+	 * @param trace file to record the trajectory to, null for no recording
+	 * @param stopConditions conditions ending the run early, as parsed by StopCondition.parse()
+	 */
+	public SimulateTask(CyNetwork petriNet, PetriUtils petriUtils, CyNetworkViewManager cnvm,
+			int times, boolean firingMode, boolean random, boolean stochastic, boolean tauLeaping, File trace,
+			String stopConditions) {
+		this.petriNet = petriNet;
+		this.petriUtils = petriUtils;
+		this.cnvm = cnvm;
+		this.times = times;
+		this.firingMode = firingMode;
+		this.random = random;
+		this.stochastic = stochastic;
+		this.tauLeaping = tauLeaping;
+		this.trace = trace;
+		this.stopConditions = stopConditions;
+	}
+
+	/**
+	 * Compile the net, fire it until either all steps are done, a stop condition holds
+	 * or the task is cancelled, then write the final marking back and update the view.
+	 */
+	public void run(TaskMonitor taskMonitor) throws Exception {
+		taskMonitor.setTitle("Firing Petri net");
+		CompiledNet net = new CompiledNet(petriNet, petriUtils.getTransitions(), petriUtils.getPlaces());
+		Simulator simulator;
+		if (stochastic) {
+			simulator = new StochasticSimulator(net, tauLeaping, new SplittableRandom());
+		}
+		else {
+			simulator = new Simulator(net, firingMode, random);
+		}
+		ArrayList<StopCondition> conditionList = StopCondition.parse(stopConditions, net, petriNet);
+		boolean perRound = true;	// Conditions that can be checked between rounds of the components
+		for (StopCondition condition : conditionList) {
+			perRound &= condition instanceof StopCondition.Deadlock || condition instanceof StopCondition.WallClock;
+		}
+		if (!stochastic && firingMode && trace == null && perRound) {
+			Components components = Components.of(net);
+			ArrayList<Integer> active = new ArrayList<Integer>();	// Components with transitions
+			for (int c=0; c<components.getCount(); c++) {
+				if (components.rows[c].length > 0) {
+					active.add(c);
+				}
+			}
+			if (active.size() > 1) {
+				runComponents(taskMonitor, net, components, active, conditionList);
+				return;
+			}
+		}
+		StopCondition[] conditions = conditionList.toArray(new StopCondition[conditionList.size()]);
+		StopCondition stoppedBy = null;
+		TraceRecorder recorder = null;
+		if (trace != null) {
+			recorder = new TraceRecorder(trace, net, simulator.marking, CHECKPOINT_INTERVAL);
+		}
+		long start = System.currentTimeMillis();
+		long lastRefresh = start;
+		int lastRefreshStep = 0;
+		int step = 0;
+		try {
+			while (step < times && !cancelled) {
+				if (simulator.step() == 0 && stochastic) { // No transition can fire anymore, time stands still
+					break;
+				}
+				if (recorder != null) {
+					recorder.record(simulator);
+				}
+				step++;
+				for (int i=0; i<conditions.length && stoppedBy == null; i++) {
+					if (conditions[i].reached(simulator)) {
+						stoppedBy = conditions[i];
+					}
+				}
+				if (stoppedBy != null) {
+					break;
+				}
+				if (step - lastRefreshStep >= REFRESH_STEPS || ((step & 0xFF) == 0	// Only look at the clock every 256 steps
+						&& System.currentTimeMillis() - lastRefresh >= REFRESH_MILLIS)) {
+					long now = System.currentTimeMillis();
+					taskMonitor.setProgress((double) step / times);
+					taskMonitor.setStatusMessage(step + " of " + times + " steps, "
+							+ (long) (step * 1000.0 / Math.max(1, now - start)) + " steps/s");
+					simulator.writeBack(petriNet);
+					new UpdateViewTask(petriNet, cnvm).run(taskMonitor);
+					lastRefresh = now;
+					lastRefreshStep = step;
+				}
+			}
+		}
+		finally {
+			if (recorder != null) {
+				recorder.close();
+			}
+		}
+		simulator.writeBack(petriNet);
+		new UpdateViewTask(petriNet, cnvm).run(taskMonitor);
+		taskMonitor.setProgress(1.0);
+		String msg = "Fired " + step + " times in " + (System.currentTimeMillis() - start) + " ms";
+		if (stochastic) {
+			msg += ", simulated time " + ((StochasticSimulator) simulator).getTime();
+		}
+		taskMonitor.setStatusMessage(msg);
+		if (stoppedBy != null) {
+			taskMonitor.showMessage(TaskMonitor.Level.INFO, "Stopped after " + step + " steps: " + stoppedBy.describe());
+		}
+	}
+
+	/**
+	 * Fires every component of the net on its own. In synchronous firing, transitions of
+	 * different components never compete for tokens, so this gives the same result as
+	 * firing the whole net, and with random order the same distribution. The components
+	 * fire in rounds of at most ROUND_STEPS steps and wait for each other in between, where
+	 * their markings are merged. Only merged markings are written back, for refreshing the
+	 * view at the usual interval and at the end, so every marking shown was reached by the
+	 * whole net. A round interrupted by cancelling is dropped.
+	 * A component is not fired anymore once it is dead, and the step after which it died is
+	 * kept. The whole net is dead once all components are, at the latest of these steps, so
+	 * a deadlock condition ends the run with the same marking and step count as firing the
+	 * whole net. A time condition is checked between rounds.
+	 * @param net compiled Petri net
+	 * @param components connected components of net
+	 * @param active components with at least one transition
+	 * @param conditions stop conditions, only deadlock and time
+	 */
+	private void runComponents(TaskMonitor taskMonitor, CompiledNet net, Components components, ArrayList<Integer> active,
+			ArrayList<StopCondition> conditions) throws Exception {
+		final Simulator[] simulators = new Simulator[active.size()];
+		SplittableRandom rnd = new SplittableRandom();
+		for (int k=0; k<simulators.length; k++) {
+			int c = active.get(k);
+			simulators[k] = new Simulator(net.subnet(components.rows[c], components.cols[c]), true, random, rnd.split());
+		}
+		final int[] deadAt = new int[simulators.length];	// Step after which a component is dead, -1 while alive
+		Arrays.fill(deadAt, -1);
+		int[] marking = net.marking.clone();	// Merged marking after the last complete round
+		boolean[] firedLast = new boolean[net.transitionCount];
+		StopCondition stoppedBy = null;
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(simulators.length, Runtime.getRuntime().availableProcessors()));
+		long start = System.currentTimeMillis();
+		long lastRefresh = start;
+		int lastRefreshStep = 0;
+		int step = 0;
+		try {
+			while (step < times && !cancelled && stoppedBy == null) {
+				final int from = step;
+				final int round = Math.min(ROUND_STEPS, Math.min(times - step, REFRESH_STEPS - (step - lastRefreshStep)));
+				final boolean[] complete = new boolean[simulators.length];
+				ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+				for (int k=0; k<simulators.length; k++) {
+					final int component = k;
+					tasks.add(new Callable<Void>() {
+						public Void call() {
+							int i = 0;
+							while (i < round && !cancelled && deadAt[component] < 0) {
+								simulators[component].step();
+								i++;
+								if (simulators[component].getEnabledCount() == 0) {
+									deadAt[component] = from + i;
+								}
+							}
+							complete[component] = i == round || deadAt[component] >= 0;
+							return null;
+						}
+					});
+				}
+				for (Future<Void> future : pool.invokeAll(tasks)) {
+					try {
+						future.get();
+					}
+					catch (ExecutionException e) {
+						throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+					}
+				}
+				boolean all = true;
+				int dead = 0;	// Step after which the whole net is dead, -1 while alive
+				for (int k=0; k<simulators.length; k++) {
+					all &= complete[k];
+					dead = dead < 0 || deadAt[k] < 0 ? -1 : Math.max(dead, deadAt[k]);
+				}
+				if (!all) {	// Cancelled within the round, the components are at different steps
+					break;
+				}
+				step += round;
+				for (StopCondition condition : conditions) {
+					if (stoppedBy == null && (condition instanceof StopCondition.Deadlock ? dead >= 0 : condition.reached(simulators[0]))) {
+						stoppedBy = condition;
+						if (dead >= 0 && condition instanceof StopCondition.Deadlock) {
+							step = dead;
+						}
+					}
+				}
+				// Merge the markings and the transitions fired in the last step into the whole net
+				for (int k=0; k<simulators.length; k++) {
+					int c = active.get(k);
+					for (int p=0; p<components.cols[c].length; p++) {
+						marking[components.cols[c][p]] = simulators[k].marking[p];
+					}
+					boolean firing = deadAt[k] < 0 || deadAt[k] >= step;	// Dead components fired nothing since
+					for (int t=0; t<components.rows[c].length; t++) {
+						firedLast[components.rows[c][t]] = firing && simulators[k].fired[t];
+					}
+				}
+				long now = System.currentTimeMillis();
+				if (step < times && stoppedBy == null && (step - lastRefreshStep >= REFRESH_STEPS || now - lastRefresh >= REFRESH_MILLIS)) {
+					taskMonitor.setProgress((double) step / times);
+					taskMonitor.setStatusMessage(step + " of " + times + " steps, "
+							+ (long) (step * 1000.0 / Math.max(1, now - start)) + " steps/s, "
+							+ simulators.length + " components in parallel");
+					net.writeBack(petriNet, marking, firedLast);
+					new UpdateViewTask(petriNet, cnvm).run(taskMonitor);
+					lastRefresh = now;
+					lastRefreshStep = step;
+				}
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+		net.writeBack(petriNet, marking, firedLast);
+		new UpdateViewTask(petriNet, cnvm).run(taskMonitor);
+		taskMonitor.setProgress(1.0);
+		taskMonitor.setStatusMessage("Fired " + step + " times in " + (System.currentTimeMillis() - start) + " ms, "
+				+ simulators.length + " components in parallel");
+		if (stoppedBy != null) {
+			taskMonitor.showMessage(TaskMonitor.Level.INFO, "Stopped after " + step + " steps: " + stoppedBy.describe());
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package org.petri;
+
+import java.io.File;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.work.AbstractTaskFactory;
+import org.cytoscape.work.TaskIterator;
+
+/**
+ * Factory for SimulateTasks
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class SimulateTaskFactory extends AbstractTaskFactory {
+	private final CyNetwork petriNet;
+	private final PetriUtils petriUtils;
+	private final CyNetworkViewManager cnvm;
+	private final int times;
+	private final boolean firingMode;
+	private final boolean random;
+	private final boolean stochastic;
+	private final boolean tauLeaping;
+	private final File trace;
+	private final String stopConditions;
+
+	/**
+	 * Constructor
+	 * @param petriNet Petri net to be fired
+	 * @param petriUtils Utilities for Petri Net
+	 * @param cnvm CyNetworkViewManager
+	 * @param times how often to fire
+	 * @param firingMode synchronous (true) or asynchronous (false) firing
+	 * @param random randomize firing order
+	 * @param stochastic stochastic simulation using the rate column
+	 * @param tauLeaping use tau-leaping for stochastic simulation
+	 * @param trace file to record the trajectory to, null for no recording
+	 * @param stopConditions conditions ending the run early
+	 */
+	public SimulateTaskFactory(final CyNetwork petriNet, final PetriUtils petriUtils, final CyNetworkViewManager cnvm,
+			int times, boolean firingMode, boolean random, boolean stochastic, boolean tauLeaping, File trace,
+			String stopConditions) {
+		this.petriNet = petriNet;
+		this.petriUtils = petriUtils;
+		this.cnvm = cnvm;
+		this.times = times;
+		this.firingMode = firingMode;
+		this.random = random;
+		this.stochastic = stochastic;
+		this.tauLeaping = tauLeaping;
+		this.trace = trace;
+		this.stopConditions = stopConditions;
+	}
+
+	public TaskIterator createTaskIterator(){
+		return new TaskIterator(new SimulateTask(petriNet, petriUtils, cnvm, times, firingMode, random, stochastic, tauLeaping, trace, stopConditions));
+	}
+}
@@ -0,0 +1,262 @@
+package org.petri;
+
+import java.util.SplittableRandom;
+
+import org.cytoscape.model.CyNetwork;
+
+/**
+ * Runs the untimed firing rules of PetriUtils.fire() on a CompiledNet.
+ * The marking is only held in an int[] during the run and has to be
+ * written back into the node table explicitly once the run ends.
+ * The set of enabled transitions is kept up to date incrementally: for every
+ * transition the number of input arcs that are not satisfied is counted, and
+ * after each step only the consumers of places whose marking changed are
+ * re-evaluated.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class Simulator {
+
+	protected final CompiledNet net;
+	protected final int[] marking;
+	protected final boolean[] fired;	// Transitions fired in the last step
+	protected final int[] firedList;	// Same as fired, as list of indices
+	protected final long[] fireCounts;	// How often each transition fired during the whole run
+	protected int firedCount;
+	protected final int[] changedList;	// Places whose marking changed in the last step
+	protected int changedCount;
+	private final int[] oldMarking;		// Marking of changed places before the last step
+	private final boolean[] changed;
+	private final int[] deficit;		// Number of unsatisfied input arcs per transition
+	private final int[] enabledList;	// Dense set of enabled transitions
+	private final int[] enabledPos;		// Position within enabledList, -1 if not enabled
+	private int enabledCount;
+	private final long[] enabledBits;	// Same set as bitset, used for firing in index order
+	private final int[] candidates;
+	private final boolean firingMode;
+	private final boolean random;
+	private final SplittableRandom rnd;
+
+	/**
+	 * Constructor
+	 * @param net compiled Petri net, its marking is copied
+	 * @param firingMode synchronous (true) or asynchronous (false) firing
+	 * @param random randomize firing order
+	 */
+	public Simulator(CompiledNet net, boolean firingMode, boolean random) {
+		this(net, firingMode, random, new SplittableRandom());
+	}
+
+	/**
+	 * Constructor
+	 * @param net compiled Petri net, its marking is copied
+	 * @param firingMode synchronous (true) or asynchronous (false) firing
+	 * @param random randomize firing order
+	 * @param rnd source of randomness, not shared with other simulators
+	 */
+	public Simulator(CompiledNet net, boolean firingMode, boolean random, SplittableRandom rnd) {
+		this.net = net;
+		this.marking = net.marking.clone();
+		this.fired = new boolean[net.transitionCount];
+		this.firedList = new int[net.transitionCount];
+		this.fireCounts = new long[net.transitionCount];
+		this.changedList = new int[net.placeCount];
+		this.oldMarking = new int[net.placeCount];
+		this.changed = new boolean[net.placeCount];
+		this.deficit = new int[net.transitionCount];
+		this.enabledList = new int[net.transitionCount];
+		this.enabledPos = new int[net.transitionCount];
+		this.enabledBits = new long[(net.transitionCount + 63) >>> 6];
+		this.candidates = new int[net.transitionCount];
+		this.firingMode = firingMode;
+		this.random = random;
+		this.rnd = rnd;
+		for (int t=0; t<net.transitionCount; t++) {
+			enabledPos[t] = -1;
+			for (int a=net.preStart[t]; a<net.preStart[t + 1]; a++) {
+				if (marking[net.prePlace[a]] < net.preWeight[a]) {
+					deficit[t]++;
+				}
+			}
+			if (deficit[t] == 0) {
+				enable(t);
+			}
+		}
+	}
+
+	/**
+	 * Fires the net once. Transitions are checked in order and consume their tokens
+	 * right away, so a later transition can not use tokens already taken by an
+	 * earlier one. Tokens are produced after all transitions have been checked.
+	 * Only transitions enabled at the start of the step are candidates, since consuming
+	 * tokens can never enable another transition.
+	 * @return number of transitions that fired
+	 */
+	public int step() {
+		beginStep();
+		if (enabledCount == 0) {	// Dead marking
+			return 0;
+		}
+		if (!firingMode) {			// Asynchronous, fire the first enabled transition of the (random) order
+			int t = random ? enabledList[rnd.nextInt(enabledCount)] : firstEnabled();
+			fire(t);
+		}
+		else {
+			int count = 0;
+			if (random) {	// Uniformly shuffled order of the enabled transitions
+				System.arraycopy(enabledList, 0, candidates, 0, enabledCount);
+				count = enabledCount;
+				for (int i=count - 1; i>0; i--) {
+					int j = rnd.nextInt(i + 1);
+					int tmp = candidates[i];
+					candidates[i] = candidates[j];
+					candidates[j] = tmp;
+				}
+			}
+			else {
+				for (int w=0; w<enabledBits.length; w++) {
+					long bits = enabledBits[w];
+					while (bits != 0) {
+						candidates[count++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+						bits &= bits - 1;
+					}
+				}
+			}
+			for (int i=0; i<count; i++) {
+				int t = candidates[i];
+				if (net.isEnabled(t, marking)) {
+					consume(t);
+				}
+			}
+			for (int i=0; i<firedCount; i++) {
+				produce(firedList[i]);
+			}
+		}
+		update();
+		return firedCount;
+	}
+
+	/**
+	 * Forgets which transitions fired and which places changed in the previous step
+	 */
+	protected void beginStep() {
+		for (int i=0; i<firedCount; i++) {
+			fired[firedList[i]] = false;
+		}
+		firedCount = 0;
+		changedCount = 0;
+	}
+
+	/**
+	 * Fires a single transition, which has to be enabled
+	 * @param t index of transition
+	 */
+	protected void fire(int t) {
+		consume(t);
+		produce(t);
+	}
+
+	protected void consume(int t) {
+		fired[t] = true;
+		firedList[firedCount++] = t;
+		fireCounts[t]++;
+		for (int a=net.preStart[t]; a<net.preStart[t + 1]; a++) {
+			int p = net.prePlace[a];
+			touch(p);
+			marking[p] -= net.preWeight[a];
+		}
+	}
+
+	protected void produce(int t) {
+		for (int a=net.postStart[t]; a<net.postStart[t + 1]; a++) {
+			int p = net.postPlace[a];
+			touch(p);
+			marking[p] += net.postWeight[a];
+		}
+	}
+
+	/**
+	 * Remembers the marking of place p before it is changed for the first time within a step
+	 * @param p index of place
+	 */
+	protected void touch(int p) {
+		if (!changed[p]) {
+			changed[p] = true;
+			oldMarking[p] = marking[p];
+			changedList[changedCount++] = p;
+		}
+	}
+
+	/**
+	 * Re-evaluates the input arcs of all consumers of places changed during the last step
+	 */
+	protected void update() {
+		for (int i=0; i<changedCount; i++) {
+			int p = changedList[i];
+			changed[p] = false;
+			int before = oldMarking[p];
+			int after = marking[p];
+			if (before == after) {
+				continue;
+			}
+			for (int a=net.consumerStart[p]; a<net.consumerStart[p + 1]; a++) {
+				int w = net.consumerWeight[a];
+				boolean wasSatisfied = before >= w;
+				boolean isSatisfied = after >= w;
+				if (wasSatisfied == isSatisfied) {
+					continue;
+				}
+				int t = net.consumerTransition[a];
+				if (isSatisfied) {
+					if (--deficit[t] == 0) {
+						enable(t);
+					}
+				}
+				else {
+					if (deficit[t]++ == 0) {
+						disable(t);
+					}
+				}
+			}
+		}
+	}
+
+	private void enable(int t) {
+		enabledPos[t] = enabledCount;
+		enabledList[enabledCount++] = t;
+		enabledBits[t >>> 6] |= 1L << t;
+	}
+
+	private void disable(int t) {
+		int pos = enabledPos[t];
+		int last = enabledList[--enabledCount];
+		enabledList[pos] = last;
+		enabledPos[last] = pos;
+		enabledPos[t] = -1;
+		enabledBits[t >>> 6] &= ~(1L << t);
+	}
+
+	private int firstEnabled() {
+		for (int w=0; w<enabledBits.length; w++) {
+			if (enabledBits[w] != 0) {
+				return (w << 6) + Long.numberOfTrailingZeros(enabledBits[w]);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return number of currently enabled transitions
+	 */
+	public int getEnabledCount() {
+		return enabledCount;
+	}
+
+	/**
+	 * Writes the current marking and the transitions fired in the last step back into the node table
+	 * @param petriNet Petri net the simulated net was compiled from
+	 */
+	public void writeBack(CyNetwork petriNet) {
+		net.writeBack(petriNet, marking, fired);
+	}
+}
@@ -0,0 +1,409 @@
+package org.petri;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Stochastic simulation of a CompiledNet with mass action kinetics, the propensity
+ * of transition t being rate(t) * product over input arcs of binomial(m(p), w).
+ * Exact simulation uses the next reaction method of Gibson and Bruck: every transition
+ * holds its absolute putative firing time in an indexed priority queue, after a firing
+ * only the transitions depending on changed places are rescaled, so one event costs
+ * O(log |T|) plus the size of that neighbourhood.
+ * Optionally, tau-leaping fires many events per step, choosing tau so that no
+ * propensity changes by more than a fraction epsilon (Cao, Gillespie, Petzold 2006),
+ * and falls back to exact events where leaping would not pay off.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class StochasticSimulator extends Simulator {
+
+	static final double EPSILON = 0.03;			// Allowed relative change of propensities per leap
+	static final double EXACT_THRESHOLD = 10.0;	// Leap only if more than this many events are expected
+	protected double time;
+	private final boolean tauLeaping;
+	private final SplittableRandom rnd;
+	private final double[] propensity;
+	private final double[] tau;					// Absolute putative firing time per transition
+	private final IndexedHeap queue;
+	private final int[] affected;				// Transitions depending on places changed by a step
+	private final int[] affectedStamp;
+	private int stamp;
+	private final int[] changeStart;			// Net change of marking per transition, as sparse rows
+	private final int[] changePlace;
+	private final int[] changeAmount;
+	private final int[] leapCount;
+	private final int[] leapMarking;
+	private final double[] leapMean;			// Expected change per place and time, used to select tau
+	private final double[] leapVariance;
+
+	/**
+	 * Constructor
+	 * @param net compiled Petri net, its marking is copied and its rates are used
+	 * @param tauLeaping use tau-leaping instead of exact event by event simulation
+	 * @param rnd source of randomness, not shared with other simulators
+	 */
+	public StochasticSimulator(CompiledNet net, boolean tauLeaping, SplittableRandom rnd) {
+		super(net, false, false, rnd);
+		this.tauLeaping = tauLeaping;
+		this.rnd = rnd;
+		this.propensity = new double[net.transitionCount];
+		this.tau = new double[net.transitionCount];
+		this.affected = new int[net.transitionCount];
+		this.affectedStamp = new int[net.transitionCount];
+		this.leapCount = new int[net.transitionCount];
+		this.leapMarking = new int[net.placeCount];
+		this.leapMean = new double[net.placeCount];
+		this.leapVariance = new double[net.placeCount];
+		this.queue = new IndexedHeap(tau);
+		for (int t=0; t<net.transitionCount; t++) {
+			propensity[t] = propensity(t);
+			tau[t] = propensity[t] > 0 ? exponential(propensity[t]) : Double.POSITIVE_INFINITY;
+			queue.add(t);
+		}
+		// Net change per transition, arcs of the same place are merged
+		int[] sum = new int[net.placeCount];
+		int[] start = new int[net.transitionCount + 1];
+		int[] place = new int[net.prePlace.length + net.postPlace.length];
+		int[] amount = new int[place.length];
+		int n = 0;
+		for (int t=0; t<net.transitionCount; t++) {
+			for (int a=net.preStart[t]; a<net.preStart[t + 1]; a++) {
+				sum[net.prePlace[a]] -= net.preWeight[a];
+			}
+			for (int a=net.postStart[t]; a<net.postStart[t + 1]; a++) {
+				sum[net.postPlace[a]] += net.postWeight[a];
+			}
+			for (int a=net.preStart[t]; a<net.preStart[t + 1]; a++) {
+				n = collect(net.prePlace[a], sum, place, amount, n);
+			}
+			for (int a=net.postStart[t]; a<net.postStart[t + 1]; a++) {
+				n = collect(net.postPlace[a], sum, place, amount, n);
+			}
+			start[t + 1] = n;
+		}
+		this.changeStart = start;
+		this.changePlace = place;
+		this.changeAmount = amount;
+	}
+
+	private static int collect(int p, int[] sum, int[] place, int[] amount, int n) {
+		if (sum[p] != 0) {
+			place[n] = p;
+			amount[n++] = sum[p];
+			sum[p] = 0;
+		}
+		return n;
+	}
+
+	/**
+	 * Propensity of transition t in the current marking
+	 * @param t index of transition
+	 * @return rate times the number of ways to pick the consumed tokens, 0 if not enabled
+	 */
+	private double propensity(int t) {
+		double a = net.rates[t];
+		for (int i=net.preStart[t]; i<net.preStart[t + 1] && a > 0; i++) {
+			int m = marking[net.prePlace[i]];
+			int w = net.preWeight[i];
+			if (m < w) {
+				return 0.0;
+			}
+			for (int k=0; k<w; k++) {	// binomial(m, w)
+				a = a * (m - k) / (k + 1);
+			}
+		}
+		return a;
+	}
+
+	private double exponential(double rate) {
+		return -Math.log(1.0 - rnd.nextDouble()) / rate;
+	}
+
+	/**
+	 * Performs one exact event or, with tau-leaping, one leap
+	 * @return number of transitions that fired, 0 if no transition can fire anymore
+	 */
+	@Override
+	public int step() {
+		beginStep();
+		if (tauLeaping && leap()) {
+			return firedCount;
+		}
+		return nextReaction() ? 1 : 0;
+	}
+
+	/**
+	 * Fires the transition with the smallest putative time and rescales the times of dependent transitions
+	 * @return false, if no transition has a finite putative time
+	 */
+	private boolean nextReaction() {
+		int t = queue.peek();
+		if (t < 0 || tau[t] == Double.POSITIVE_INFINITY) {
+			return false;
+		}
+		time = tau[t];
+		fire(t);
+		update();
+		stamp++;
+		int count = collectAffected(t);
+		for (int i=0; i<count; i++) {
+			int j = affected[i];
+			double old = propensity[j];
+			double a = propensity(j);
+			propensity[j] = a;
+			if (a <= 0) {
+				tau[j] = Double.POSITIVE_INFINITY;
+			}
+			else if (j != t && old > 0) {	// Reuse the remaining waiting time, rescaled to the new propensity
+				tau[j] = time + (old / a) * (tau[j] - time);
+			}
+			else {
+				tau[j] = time + exponential(a);
+			}
+			queue.update(j);
+		}
+		return true;
+	}
+
+	/**
+	 * Collects t itself and all consumers of places changed in the current step
+	 * @param t fired transition
+	 * @return number of affected transitions
+	 */
+	private int collectAffected(int t) {
+		int count = 0;
+		affectedStamp[t] = stamp;
+		affected[count++] = t;
+		for (int i=0; i<changedCount; i++) {
+			int p = changedList[i];
+			for (int a=net.consumerStart[p]; a<net.consumerStart[p + 1]; a++) {
+				int j = net.consumerTransition[a];
+				if (affectedStamp[j] != stamp) {
+					affectedStamp[j] = stamp;
+					affected[count++] = j;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Tries a single tau-leap. Falls back to an exact event, if the expected
+	 * number of events is too small for leaping to pay off.
+	 * @return true, if the step was done here, false if the caller should do one exact event
+	 */
+	private boolean leap() {
+		double total = 0;
+		for (int t=0; t<net.transitionCount; t++) {
+			total += propensity[t];
+		}
+		if (total <= 0) {
+			return false;
+		}
+		double step = selectTau();
+		if (step * total < EXACT_THRESHOLD) {	// Leaping is not worth it, do an exact event instead
+			return false;
+		}
+		while (true) {
+			boolean negative = false;
+			System.arraycopy(marking, 0, leapMarking, 0, marking.length);
+			try {
+				for (int t=0; t<net.transitionCount; t++) {
+					leapCount[t] = propensity[t] > 0 ? poisson(propensity[t] * step) : 0;
+					for (int a=changeStart[t]; a<changeStart[t + 1] && leapCount[t] > 0; a++) {
+						leapMarking[changePlace[a]] = Math.toIntExact(Math.addExact(leapMarking[changePlace[a]],
+								Math.multiplyExact((long) leapCount[t], changeAmount[a])));
+					}
+				}
+			}
+			catch (ArithmeticException e) {
+				negative = true;	// Token amounts beyond int, rejected like a negative one
+			}
+			for (int p=0; p<net.placeCount && !negative; p++) {
+				negative = leapMarking[p] < 0;
+			}
+			if (!negative) {
+				break;
+			}
+			step /= 2;	// Leap overshot into negative or too large token amounts, try a shorter one
+		}
+		time += step;
+		for (int t=0; t<net.transitionCount; t++) {
+			if (leapCount[t] > 0) {
+				fired[t] = true;
+				firedList[firedCount++] = t;
+				fireCounts[t] += leapCount[t];
+				for (int a=changeStart[t]; a<changeStart[t + 1]; a++) {
+					touch(changePlace[a]);
+				}
+			}
+		}
+		System.arraycopy(leapMarking, 0, marking, 0, marking.length);
+		update();
+		// Putative times are meaningless after a leap, redraw all of them
+		for (int t=0; t<net.transitionCount; t++) {
+			propensity[t] = propensity(t);
+			tau[t] = propensity[t] > 0 ? time + exponential(propensity[t]) : Double.POSITIVE_INFINITY;
+			queue.update(t);
+		}
+		return true;
+	}
+
+	/**
+	 * Chooses the leap length so that the expected change and the standard deviation of every
+	 * place's marking stay below EPSILON times its current amount (at least 1)
+	 * @return leap length
+	 */
+	private double selectTau() {
+		double[] mean = leapMean;
+		double[] var = leapVariance;
+		Arrays.fill(mean, 0.0);
+		Arrays.fill(var, 0.0);
+		for (int t=0; t<net.transitionCount; t++) {
+			if (propensity[t] <= 0) {
+				continue;
+			}
+			for (int a=changeStart[t]; a<changeStart[t + 1]; a++) {
+				mean[changePlace[a]] += changeAmount[a] * propensity[t];
+				var[changePlace[a]] += (double) changeAmount[a] * changeAmount[a] * propensity[t];
+			}
+		}
+		double step = Double.POSITIVE_INFINITY;
+		for (int p=0; p<net.placeCount; p++) {
+			double bound = Math.max(EPSILON * marking[p], 1.0);
+			if (mean[p] != 0) {
+				step = Math.min(step, bound / Math.abs(mean[p]));
+			}
+			if (var[p] != 0) {
+				step = Math.min(step, bound * bound / var[p]);
+			}
+		}
+		return step;
+	}
+
+	/**
+	 * Draws a Poisson distributed number. Uses multiplication of uniforms for small means and
+	 * the transformed rejection method with squeeze (Hoermann 1993) for large means.
+	 * @param mean expected value
+	 * @return random number of events
+	 */
+	private int poisson(double mean) {
+		if (mean < 10) {
+			double limit = Math.exp(-mean);
+			double product = rnd.nextDouble();
+			int k = 0;
+			while (product > limit) {
+				product *= rnd.nextDouble();
+				k++;
+			}
+			return k;
+		}
+		double slam = Math.sqrt(mean);
+		double loglam = Math.log(mean);
+		double b = 0.931 + 2.53 * slam;
+		double a = -0.059 + 0.02483 * b;
+		double invalpha = 1.1239 + 1.1328 / (b - 3.4);
+		double vr = 0.9277 - 3.6224 / (b - 2);
+		while (true) {
+			double u = rnd.nextDouble() - 0.5;
+			double v = rnd.nextDouble();
+			double us = 0.5 - Math.abs(u);
+			long k = (long) Math.floor((2 * a / us + b) * u + mean + 0.43);
+			if (us >= 0.07 && v <= vr) {
+				return (int) Math.min(k, Integer.MAX_VALUE);
+			}
+			if (k < 0 || (us < 0.013 && v > us)) {
+				continue;
+			}
+			if (Math.log(v) + Math.log(invalpha) - Math.log(a / (us * us) + b)
+					<= -mean + k * loglam - logFactorial(k)) {
+				return (int) Math.min(k, Integer.MAX_VALUE);
+			}
+		}
+	}
+
+	private static double logFactorial(long k) {
+		if (k < 2) {
+			return 0.0;
+		}
+		double x = k + 1.0;	// Stirling series for log Gamma(k+1)
+		return (x - 0.5) * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI)
+				+ 1.0 / (12 * x) - 1.0 / (360 * x * x * x);
+	}
+
+	/**
+	 * @return simulated time
+	 */
+	public double getTime() {
+		return time;
+	}
+
+	/**
+	 * Binary min-heap of transitions keyed by their putative firing time,
+	 * which knows the position of every transition to update keys in place
+	 */
+	private static class IndexedHeap {
+		private final double[] key;
+		private final int[] heap;
+		private final int[] pos;
+		private int size;
+
+		IndexedHeap(double[] key) {
+			this.key = key;
+			this.heap = new int[key.length];
+			this.pos = new int[key.length];
+		}
+
+		void add(int t) {
+			heap[size] = t;
+			pos[t] = size++;
+			up(pos[t]);
+		}
+
+		int peek() {
+			return size == 0 ? -1 : heap[0];
+		}
+
+		void update(int t) {
+			up(pos[t]);
+			down(pos[t]);
+		}
+
+		private void up(int i) {
+			int t = heap[i];
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (key[heap[parent]] <= key[t]) {
+					break;
+				}
+				heap[i] = heap[parent];
+				pos[heap[i]] = i;
+				i = parent;
+			}
+			heap[i] = t;
+			pos[t] = i;
+		}
+
+		private void down(int i) {
+			int t = heap[i];
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && key[heap[child + 1]] < key[heap[child]]) {
+					child++;
+				}
+				if (key[heap[child]] >= key[t]) {
+					break;
+				}
+				heap[i] = heap[child];
+				pos[heap[i]] = i;
+				i = child;
+			}
+			heap[i] = t;
+			pos[t] = i;
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package org.petri;
+
+import java.util.ArrayList;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+
+/**
+ * Condition for ending a simulation run early. Conditions are evaluated
+ * against the compiled marking of the Simulator after every step, so they
+ * must not touch the node table.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public abstract class StopCondition {
+
+	/**
+	 * Checks whether the run should end
+	 * @param simulator simulator after its last step
+	 * @return true, if the condition holds
+	 */
+	public abstract boolean reached(Simulator simulator);
+
+	/**
+	 * @return description of the condition shown to the user once it ended a run
+	 */
+	public abstract String describe();
+
+	/**
+	 * No transition is enabled anymore
+	 */
+	static class Deadlock extends StopCondition {
+		public boolean reached(Simulator simulator) {
+			return simulator.getEnabledCount() == 0;
+		}
+
+		public String describe() {
+			return "deadlock, no transition is enabled";
+		}
+	}
+
+	/**
+	 * The amount of tokens on a place reached a threshold
+	 */
+	static class PlaceBound extends StopCondition {
+		private final int place;
+		private final String name;
+		private final boolean atLeast;
+		private final int bound;
+
+		PlaceBound(int place, String name, boolean atLeast, int bound) {
+			this.place = place;
+			this.name = name;
+			this.atLeast = atLeast;
+			this.bound = bound;
+		}
+
+		public boolean reached(Simulator simulator) {
+			int m = simulator.marking[place];
+			return atLeast ? m >= bound : m <= bound;
+		}
+
+		public String describe() {
+			return name + (atLeast ? " >= " : " <= ") + bound;
+		}
+	}
+
+	/**
+	 * A transition fired a given number of times during the run
+	 */
+	static class FiredCount extends StopCondition {
+		private final int transition;
+		private final String name;
+		private final long count;
+
+		FiredCount(int transition, String name, long count) {
+			this.transition = transition;
+			this.name = name;
+			this.count = count;
+		}
+
+		public boolean reached(Simulator simulator) {
+			return simulator.fireCounts[transition] >= count;
+		}
+
+		public String describe() {
+			return name + " fired " + count + " times";
+		}
+	}
+
+	/**
+	 * The run took longer than a given amount of wall-clock time
+	 */
+	static class WallClock extends StopCondition {
+		private final long seconds;
+		private final long deadline;
+
+		WallClock(long seconds) {
+			this.seconds = seconds;
+			this.deadline = System.nanoTime() + seconds * 1000000000L;
+		}
+
+		public boolean reached(Simulator simulator) {
+			return System.nanoTime() - deadline >= 0;
+		}
+
+		public String describe() {
+			return "time limit of " + seconds + " s";
+		}
+	}
+
+	/**
+	 * Parses stop conditions separated by ';'. Supported are
+	 * 	- deadlock
+	 * 	- PLACE >= n, PLACE <= n
+	 * 	- TRANSITION fired n
+	 * 	- time s (wall-clock seconds)
+	 * where places and transitions are referenced by name.
+	 * @param text conditions entered by the user, may be empty
+	 * @param net compiled net the conditions refer to
+	 * @param petriNet Petri net the net was compiled from, used to resolve names
+	 * @return parsed conditions
+	 * @throws Exception if a condition can not be parsed or refers to an unknown node
+	 */
+	public static ArrayList<StopCondition> parse(String text, CompiledNet net, CyNetwork petriNet) throws Exception {
+		ArrayList<StopCondition> conditions = new ArrayList<StopCondition>();
+		for (String part : text.split(";")) {
+			String cond = part.trim();
+			if (cond.isEmpty()) {
+				continue;
+			}
+			if (cond.equalsIgnoreCase("deadlock")) {
+				conditions.add(new Deadlock());
+				continue;
+			}
+			String[] split = cond.split("\\s+");
+			if (split.length == 2 && split[0].equalsIgnoreCase("time") && !PetriUtils.not_int(split[1])) {
+				conditions.add(new WallClock(Integer.parseInt(split[1])));
+				continue;
+			}
+			int geq = cond.indexOf(">=");
+			int leq = cond.indexOf("<=");
+			if (geq > 0 || leq > 0) {
+				int op = geq > 0 ? geq : leq;
+				String name = cond.substring(0, op).trim();
+				String bound = cond.substring(op + 2).trim();
+				int place = indexOf(name, net.places, petriNet);
+				if (place < 0 || PetriUtils.not_int(bound)) {
+					throw new Exception("Invalid stop condition \"" + cond + "\": unknown place or invalid bound");
+				}
+				conditions.add(new PlaceBound(place, name, geq > 0, Integer.parseInt(bound)));
+				continue;
+			}
+			int fired = cond.toLowerCase().lastIndexOf(" fired ");
+			if (fired > 0) {
+				String name = cond.substring(0, fired).trim();
+				String count = cond.substring(fired + 7).trim();
+				int transition = indexOf(name, net.transitions, petriNet);
+				if (transition < 0 || PetriUtils.not_int(count)) {
+					throw new Exception("Invalid stop condition \"" + cond + "\": unknown transition or invalid count");
+				}
+				conditions.add(new FiredCount(transition, name, Integer.parseInt(count)));
+				continue;
+			}
+			throw new Exception("Invalid stop condition \"" + cond + "\"");
+		}
+		return conditions;
+	}
+
+	private static int indexOf(String name, CyNode[] nodes, CyNetwork petriNet) {
+		for (int i=0; i<nodes.length; i++) {
+			if (name.equals(petriNet.getDefaultNodeTable().getRow(nodes[i].getSUID()).get("name", String.class))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,192 @@
+package org.petri;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads trajectories written by TraceRecorder. Opening a trace indexes its
+ * checkpoints, afterwards the marking after any step is restored by replaying
+ * the deltas from the closest preceding checkpoint. Only the data up to the end
+ * stored in the header is read, so a trace whose recorder was not closed ends
+ * at its last checkpoint.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class TraceReader {
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final long end;
+	protected final int placeCount;
+	protected final int transitionCount;
+	private final int checkpointInterval;
+	private long[] checkpointPosition;	// File position of the checkpoint of step i * checkpointInterval
+	private long steps;
+	private MappedByteBuffer window;
+	private long windowStart;
+
+	/**
+	 * Constructor, reads the header and indexes all checkpoints
+	 * @param trace file written by TraceRecorder
+	 * @throws IOException if the file can not be read or is no trace
+	 */
+	public TraceReader(File trace) throws IOException {
+		this.file = new RandomAccessFile(trace, "r");
+		this.channel = file.getChannel();
+		MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, TraceRecorder.HEADER_SIZE);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		if (header.getInt() != TraceRecorder.MAGIC || header.getInt() != TraceRecorder.VERSION) {
+			file.close();
+			throw new IOException("Not a PIC trace file: " + trace.getName());
+		}
+		this.placeCount = header.getInt();
+		this.transitionCount = header.getInt();
+		this.checkpointInterval = header.getInt();
+		long dataEnd = header.getLong();	// The rest of the file may be zeros of a mapped window
+		if (dataEnd < TraceRecorder.HEADER_SIZE || dataEnd > channel.size()) {
+			file.close();
+			throw new IOException("Incomplete PIC trace file: " + trace.getName());
+		}
+		this.end = dataEnd;
+		index();
+	}
+
+	/**
+	 * Makes sure the given range of the file is mapped
+	 * @param position file position
+	 * @param bytes number of bytes needed from there
+	 * @throws IOException if the file can not be mapped
+	 */
+	private void seek(long position, int bytes) throws IOException {
+		if (window == null || position < windowStart || position + bytes > windowStart + window.limit()) {
+			windowStart = position;
+			window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+					Math.min(Math.max(bytes, TraceRecorder.WINDOW_SIZE), end - position));
+			window.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		window.position((int) (position - windowStart));
+	}
+
+	/**
+	 * Scans all records once, counting steps and remembering where the checkpoints are
+	 * @throws IOException if the file can not be read
+	 */
+	private void index() throws IOException {
+		long[] positions = new long[16];
+		int checkpoints = 0;
+		long position = TraceRecorder.HEADER_SIZE;
+		while (position + 4 <= end) {
+			seek(position, 4);
+			int n = window.getInt();
+			if (n == TraceRecorder.CHECKPOINT) {
+				if (checkpoints == positions.length) {
+					positions = Arrays.copyOf(positions, checkpoints * 2);
+				}
+				positions[checkpoints++] = position;
+				position += 12 + 4L * placeCount;
+				continue;
+			}
+			position += 4 + 4L * n;
+			seek(position, 4);
+			position += 4 + 8L * window.getInt();
+			steps++;
+		}
+		checkpointPosition = Arrays.copyOf(positions, checkpoints);
+	}
+
+	/**
+	 * @return number of recorded steps
+	 */
+	public long getSteps() {
+		return steps;
+	}
+
+	/**
+	 * Restores the marking after the given number of steps
+	 * @param step number of steps, 0 for the marking before the first step
+	 * @return marking as int[] indexed like the compiled net
+	 * @throws IOException if the file can not be read
+	 */
+	public int[] markingAt(long step) throws IOException {
+		if (step < 0 || step > steps) {
+			throw new IllegalArgumentException("Step " + step + " not within trace of " + steps + " steps");
+		}
+		int[] marking = new int[placeCount];
+		int checkpoint = (int) Math.min(step / checkpointInterval, checkpointPosition.length - 1);
+		long position = checkpointPosition[checkpoint];
+		seek(position, 12 + 4 * placeCount);
+		window.getInt();
+		long current = window.getLong();
+		for (int p=0; p<placeCount; p++) {
+			marking[p] = window.getInt();
+		}
+		position += 12 + 4L * placeCount;
+		while (current < step) {
+			seek(position, 4);
+			int n = window.getInt();
+			if (n == TraceRecorder.CHECKPOINT) {
+				position += 12 + 4L * placeCount;
+				continue;
+			}
+			position += 4 + 4L * n;
+			seek(position, 4);
+			int k = window.getInt();
+			seek(position + 4, 8 * k);
+			for (int i=0; i<k; i++) {
+				int p = window.getInt();
+				marking[p] = window.getInt();
+			}
+			position += 4 + 8L * k;
+			current++;
+		}
+		return marking;
+	}
+
+	/**
+	 * Returns the transitions fired in the given step
+	 * @param step number of the step, starting at 1
+	 * @return indices of fired transitions
+	 * @throws IOException if the file can not be read
+	 */
+	public int[] firedAt(long step) throws IOException {
+		if (step < 1 || step > steps) {
+			throw new IllegalArgumentException("Step " + step + " not within trace of " + steps + " steps");
+		}
+		int checkpoint = (int) Math.min((step - 1) / checkpointInterval, checkpointPosition.length - 1);
+		long position = checkpointPosition[checkpoint] + 12 + 4L * placeCount;
+		long current = (long) checkpoint * checkpointInterval;
+		while (true) {
+			seek(position, 4);
+			int n = window.getInt();
+			if (n == TraceRecorder.CHECKPOINT) {
+				position += 12 + 4L * placeCount;
+				continue;
+			}
+			if (++current == step) {
+				int[] fired = new int[n];
+				seek(position + 4, 4 * n);
+				for (int i=0; i<n; i++) {
+					fired[i] = window.getInt();
+				}
+				return fired;
+			}
+			position += 4 + 4L * n;
+			seek(position, 4);
+			position += 4 + 8L * window.getInt();
+		}
+	}
+
+	/**
+	 * Closes the trace file
+	 * @throws IOException if closing fails
+	 */
+	public void close() throws IOException {
+		window = null;
+		file.close();
+	}
+}
@@ -0,0 +1,158 @@
+package org.petri;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Records the trajectory of a simulation run into an append-only binary file,
+ * which is written through memory-mapped windows so it never has to be held on heap.
+ *
+ * File layout (little endian):
+ * 	- header: magic "PICT", version, number of places, number of transitions, checkpoint interval,
+ * 	  end of the recorded data as long (the file may be longer, as mapped windows can not always be cut off),
+ * 	  updated after every checkpoint and on close, so an unclosed trace ends at its last checkpoint
+ * 	- per step: a step record
+ * 		int n, n fired transition indices,
+ * 		int k, k pairs of (changed place index, new amount of tokens)
+ * 	- before step 0 and after every checkpoint interval steps: a checkpoint record
+ * 		int -1, the step number as long, the full marking as int[places]
+ * The step record starts with a non-negative count, so both kinds of records can be told apart.
+ * Checkpoints allow TraceReader to seek to any step without replaying from the start.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class TraceRecorder {
+
+	static final int MAGIC = 0x54434950;	// "PICT"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 28;
+	static final int CHECKPOINT = -1;
+	static final long WINDOW_SIZE = 64L << 20;	// Size of the mapped window, 64 MB
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final int checkpointInterval;
+	private final int placeCount;
+	private final MappedByteBuffer header;
+	private MappedByteBuffer window;
+	private long windowStart;
+	private long step;
+
+	/**
+	 * Constructor, creates or truncates the trace file and writes header and initial checkpoint
+	 * @param trace file to write to
+	 * @param net compiled net that is going to be simulated
+	 * @param marking marking before the first step
+	 * @param checkpointInterval number of steps between full markings
+	 * @throws IOException if the file can not be written
+	 */
+	public TraceRecorder(File trace, CompiledNet net, int[] marking, int checkpointInterval) throws IOException {
+		this.file = new RandomAccessFile(trace, "rw");
+		this.file.setLength(0);
+		this.channel = file.getChannel();
+		this.checkpointInterval = checkpointInterval;
+		this.placeCount = net.placeCount;
+		map(0, HEADER_SIZE + 12 + 4L * placeCount);
+		window.putInt(MAGIC);
+		window.putInt(VERSION);
+		window.putInt(net.placeCount);
+		window.putInt(net.transitionCount);
+		window.putInt(checkpointInterval);
+		window.putLong(0);	// End of data, written at every checkpoint
+		header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		checkpoint(marking);
+	}
+
+	/**
+	 * Maps a new window starting at the given file position
+	 * @param position file position of the window
+	 * @param size minimum size of the window
+	 * @throws IOException if the file can not be mapped
+	 */
+	private void map(long position, long size) throws IOException {
+		windowStart = position;
+		window = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(size, WINDOW_SIZE));
+		window.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Makes sure the current window has room for the given amount of bytes
+	 * @param bytes size of the next record
+	 * @throws IOException if the file can not be mapped
+	 */
+	private void ensure(int bytes) throws IOException {
+		if (window.remaining() < bytes) {
+			map(windowStart + window.position(), bytes);
+		}
+	}
+
+	/**
+	 * Appends the delta of the step the simulator just did, and a checkpoint if one is due
+	 * @param simulator simulator after its step
+	 * @throws IOException if the file can not be written
+	 */
+	public void record(Simulator simulator) throws IOException {
+		int fired = simulator.firedCount;
+		int changed = simulator.changedCount;
+		ensure(8 + 4 * fired + 8 * changed);
+		window.putInt(fired);
+		for (int i=0; i<fired; i++) {
+			window.putInt(simulator.firedList[i]);
+		}
+		window.putInt(changed);
+		for (int i=0; i<changed; i++) {
+			int p = simulator.changedList[i];
+			window.putInt(p);
+			window.putInt(simulator.marking[p]);
+		}
+		step++;
+		if (step % checkpointInterval == 0) {
+			checkpoint(simulator.marking);
+		}
+	}
+
+	/**
+	 * Appends a full marking and moves the end of the data in the header behind it
+	 * @param marking current marking
+	 * @throws IOException if the file can not be written
+	 */
+	private void checkpoint(int[] marking) throws IOException {
+		ensure(12 + 4 * placeCount);
+		window.putInt(CHECKPOINT);
+		window.putLong(step);
+		for (int p=0; p<placeCount; p++) {
+			window.putInt(marking[p]);
+		}
+		header.putLong(HEADER_SIZE - 8, windowStart + window.position());
+	}
+
+	/**
+	 * Stores the end of the recorded data, cuts the file to that length and closes it
+	 * @throws IOException if the file can not be written
+	 */
+	public void close() throws IOException {
+		long length = windowStart + window.position();
+		window.force();
+		window = null;
+		header.putLong(HEADER_SIZE - 8, length);
+		header.force();
+		try {
+			channel.truncate(length);
+		}
+		catch (IOException e) {
+			// Some platforms refuse to cut mapped files, readers rely on the header instead
+		}
+		file.close();
+	}
+
+	/**
+	 * @return number of recorded steps
+	 */
+	public long getSteps() {
+		return step;
+	}
+}
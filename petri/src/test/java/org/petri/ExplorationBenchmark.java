@@ -0,0 +1,109 @@
+package org.petri;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmark of the ParallelExplorer on a scalable net, kept with the tests so it is not
+ * part of the bundle, and run from the command line after mvn test-compile:
+ * java -cp target/classes:target/test-classes org.petri.ExplorationBenchmark [rings] [length] [threads...]
+ * The net consists of rings of places passing one token around each, plus one shared
+ * place every ring takes a token from and returns it to on one of its steps. It has
+ * length^rings markings, e.g. 10^7 for the defaults, and is explored once per number of
+ * threads, by default 1, 2, 4, ... up to the number of processors. Reported are the time,
+ * the markings expanded per second and the speedup over the first run. Nets with more
+ * than ParallelExplorer.MAX_BUDGET markings are only explored up to that many, and the
+ * runs are reported as truncated.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class ExplorationBenchmark {
+
+	public static void main(String[] args) {
+		int rings = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+		int length = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int[] threads;
+		if (args.length > 2) {
+			threads = new int[args.length - 2];
+			for (int i=2; i<args.length; i++) {
+				threads[i - 2] = Integer.parseInt(args[i]);
+			}
+		}
+		else {
+			int processors = Runtime.getRuntime().availableProcessors();
+			threads = new int[32 - Integer.numberOfLeadingZeros(processors)];
+			for (int i=0; i<threads.length; i++) {
+				threads[i] = 1 << i;
+			}
+			if (threads[threads.length - 1] != processors) {
+				threads = Arrays.copyOf(threads, threads.length + 1);
+				threads[threads.length - 1] = processors;
+			}
+		}
+		CompiledNet net = rings(rings, length);
+		long markings = (long) Math.pow(length, rings);
+		System.out.println(rings + " rings of length " + length + ": " + net.placeCount + " places, "
+				+ net.transitionCount + " transitions, " + markings + " markings");
+		int budget = (int) Math.min(markings, ParallelExplorer.MAX_BUDGET);	// Larger nets are only explored in part
+		double first = 0;
+		for (int n : threads) {
+			ForkJoinPool pool = new ForkJoinPool(n);
+			try {
+				ParallelExplorer explorer = new ParallelExplorer(net, net.marking, budget);
+				while (explorer.expand(pool)) {
+				}
+				double rate = explorer.getStatesPerSecond();
+				if (first == 0) {
+					first = rate;
+				}
+				System.out.println(String.format("%3d threads: %,d markings, %,d edges in %,d ms, %,.0f markings/s, speedup %.2f%s",
+						n, explorer.getStateCount(), explorer.getEdgeCount(), (long) (explorer.getExpanded() / rate * 1000), rate, rate / first,
+						explorer.isTruncated() ? String.format(", truncated at the budget of %,d markings", budget) : ""));
+			}
+			finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Builds the benchmark net
+	 * @param rings number of rings
+	 * @param length places per ring
+	 * @return compiled net with the token of every ring on its first place and one token on the shared place
+	 */
+	static CompiledNet rings(int rings, int length) {
+		int places = rings * length + 1;
+		int shared = places - 1;
+		int transitions = rings * length;
+		int[] marking = new int[places];
+		int[] preStart = new int[transitions + 1];
+		int[] postStart = new int[transitions + 1];
+		int[] prePlace = new int[transitions + rings];
+		int[] preWeight = new int[prePlace.length];
+		int[] postPlace = new int[transitions + rings];
+		int[] postWeight = new int[postPlace.length];
+		int pre = 0;
+		int post = 0;
+		for (int r=0; r<rings; r++) {
+			marking[r * length] = 1;
+			for (int i=0; i<length; i++) {
+				int t = r * length + i;
+				prePlace[pre] = t;
+				preWeight[pre++] = 1;
+				postPlace[post] = r * length + (i + 1) % length;
+				postWeight[post++] = 1;
+				if (i == 0) {	// Borrows the shared token and returns it at once
+					prePlace[pre] = shared;
+					preWeight[pre++] = 1;
+					postPlace[post] = shared;
+					postWeight[post++] = 1;
+				}
+				preStart[t + 1] = pre;
+				postStart[t + 1] = post;
+			}
+		}
+		marking[shared] = 1;
+		return new CompiledNet(marking, preStart, prePlace, preWeight, postStart, postPlace, postWeight);
+	}
+}
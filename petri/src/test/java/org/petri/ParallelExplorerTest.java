@@ -0,0 +1,156 @@
+package org.petri;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Cross-check of the ParallelExplorer against the sequential ReachabilityGraph.
+ * The random nets have up to 6 places and transitions with random arc weights and
+ * tokens, and a random budget, so that many explorations stop at the budget. If the
+ * graph is complete, the explorer must find the same markings, edges, deadlocks and
+ * dead transitions, otherwise it must stop as well, with at most one marking per
+ * thread beyond the budget.
+ * @author M. Gehrmann, M. Kirchner
+ *
+ */
+public class ParallelExplorerTest {
+
+	private static final int NETS = 150;
+	private static final int[] THREADS = {1, 3, 8};
+
+	@Test
+	public void matchesSequentialGraph() {
+		ForkJoinPool[] pools = new ForkJoinPool[THREADS.length];
+		for (int i=0; i<pools.length; i++) {
+			pools[i] = new ForkJoinPool(THREADS[i]);
+		}
+		Random rnd = new Random(5);
+		try {
+			for (int n=0; n<NETS; n++) {
+				CompiledNet net = random(rnd);
+				int budget = 1 + rnd.nextInt(5000);
+				int pool = rnd.nextInt(pools.length);
+				String message = "net " + n + " on " + THREADS[pool] + " threads, budget " + budget;
+				ReachabilityGraph graph = new ReachabilityGraph(net, net.marking, budget);
+				while (graph.expand(1000)) {
+				}
+				ParallelExplorer explorer = new ParallelExplorer(net, net.marking, budget);
+				while (explorer.expand(pools[pool])) {
+				}
+				if (graph.isComplete()) {
+					assertTrue(message, explorer.isComplete());
+					assertEquals(message, graph.getStateCount(), explorer.getStateCount());
+					assertEquals(message, graph.getStateCount(), explorer.getExpanded());
+					assertEquals(message, graph.getEdgeCount(), explorer.getEdgeCount());
+					HashSet<String> deadlocks = new HashSet<String>();
+					for (int d : graph.getDeadlocks()) {
+						deadlocks.add(Arrays.toString(graph.getMarking(d)));
+					}
+					HashSet<String> found = new HashSet<String>();
+					for (long d : explorer.getDeadlocks()) {
+						found.add(Arrays.toString(explorer.getMarking(d)));
+					}
+					assertEquals(message, graph.getDeadlocks().length, explorer.getDeadlocks().length);
+					assertEquals(message, deadlocks, found);
+					assertArrayEquals(message, graph.getDeadTransitions(), explorer.getDeadTransitions());
+				}
+				else {
+					assertTrue(message, explorer.isTruncated());
+					assertFalse(message, explorer.isComplete());
+					assertTrue(message, explorer.getStateCount() >= budget && explorer.getStateCount() < budget + THREADS[pool]);
+				}
+			}
+		}
+		finally {
+			for (ForkJoinPool pool : pools) {
+				pool.shutdown();
+			}
+		}
+	}
+
+	@Test
+	public void exploresBenchmarkNet() {
+		CompiledNet net = ExplorationBenchmark.rings(3, 4);	// 4^3 markings, each enabling one transition per ring
+		for (int threads : THREADS) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				ParallelExplorer explorer = new ParallelExplorer(net, net.marking, 1000);
+				while (explorer.expand(pool)) {
+				}
+				assertTrue(explorer.isComplete());
+				assertEquals(64, explorer.getStateCount());
+				assertEquals(64 * 3, explorer.getEdgeCount());
+				assertEquals(0, explorer.getDeadlocks().length);
+				assertEquals(0, explorer.getDeadTransitions().length);
+			}
+			finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	@Test
+	public void largeBudgetDoesNotAllocateTable() {
+		CompiledNet net = ExplorationBenchmark.rings(1, 10);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			ParallelExplorer explorer = new ParallelExplorer(net, net.marking, ParallelExplorer.MAX_BUDGET);
+			while (explorer.expand(pool)) {
+			}
+			assertTrue(explorer.isComplete());
+			assertEquals(10, explorer.getStateCount());
+			assertTrue(explorer.bytes() < ParallelExplorer.MAX_BUDGET);	// Far less than the 8 bytes per marking of the budget
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Builds a random net, where a transition takes 1 or 2 tokens from a place, or puts up to 150 tokens on it
+	 * @param rnd source of randomness
+	 * @return compiled net with up to 200 tokens on every place
+	 */
+	static CompiledNet random(Random rnd) {
+		int transitions = 1 + rnd.nextInt(6);
+		int places = 1 + rnd.nextInt(6);
+		int[] preStart = new int[transitions + 1];
+		int[] postStart = new int[transitions + 1];
+		int[] prePlace = new int[transitions * places];
+		int[] preWeight = new int[prePlace.length];
+		int[] postPlace = new int[transitions * places];
+		int[] postWeight = new int[postPlace.length];
+		int pre = 0;
+		int post = 0;
+		for (int t=0; t<transitions; t++) {
+			for (int p=0; p<places; p++) {
+				int r = rnd.nextInt(6);
+				if (r < 2) {
+					prePlace[pre] = p;
+					preWeight[pre++] = r == 0 ? 1 + rnd.nextInt(2) : 1;
+				}
+				else if (r == 2) {
+					postPlace[post] = p;
+					postWeight[post++] = 1 + rnd.nextInt(150);
+				}
+			}
+			preStart[t + 1] = pre;
+			postStart[t + 1] = post;
+		}
+		int[] marking = new int[places];
+		for (int p=0; p<places; p++) {
+			marking[p] = rnd.nextInt(200);
+		}
+		return new CompiledNet(marking, preStart, Arrays.copyOf(prePlace, pre), Arrays.copyOf(preWeight, pre),
+				postStart, Arrays.copyOf(postPlace, post), Arrays.copyOf(postWeight, post));
+	}
+}